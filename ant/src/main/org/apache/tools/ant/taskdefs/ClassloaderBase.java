@@ -17,6 +17,15 @@
 
 package org.apache.tools.ant.taskdefs;
 
+import java.lang.reflect.Method;
+import java.text.MessageFormat;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.tools.ant.BuildListener;
+import org.apache.tools.ant.BuildLogger;
 import org.apache.tools.ant.Location;
 import org.apache.tools.ant.Project;
 import org.apache.tools.ant.Task;
@@ -35,7 +44,10 @@ import org.apache.tools.ant.util.URLUtils;
  */
 public class ClassloaderBase extends Task implements ClassloaderContext {
     private boolean failOnError = true;
-    private ClassLoaderHandlerSet handlerSet = null;
+    private volatile ClassLoaderHandlerSet handlerSet = null;
+    private final HashMap timings = new HashMap();
+    private String timingsProperty = null;
+    private volatile Boolean debugEnabled = null;
     /**
      * Default constructor
      */
@@ -76,10 +88,16 @@ public class ClassloaderBase extends Task implements ClassloaderContext {
      * @return The handlerset.
      */
     public ClassLoaderHandlerSet getHandlerSet() {
-        if (handlerSet == null) {
-            handlerSet = newHandlerSet();
+        ClassLoaderHandlerSet result = handlerSet;
+        if (result == null) {
+            synchronized (this) {
+                if (handlerSet == null) {
+                    handlerSet = newHandlerSet();
+                }
+                result = handlerSet;
+            }
         }
-        return handlerSet;
+        return result;
     }
     /**
      * This implementation logs the msg with MSG_WARN.
@@ -95,7 +113,141 @@ public class ClassloaderBase extends Task implements ClassloaderContext {
     public void handleDebug(String msg) {
         log(msg, Project.MSG_DEBUG);
     }
+    /**
+     * This implementation formats and logs the message with MSG_DEBUG,
+     * if debug messages are enabled.
+     * @param pattern The message pattern.
+     * @param arg The argument for <code>{0}</code>.
+     */
+    public void handleDebug(String pattern, Object arg) {
+        if (isDebugEnabled()) {
+            handleDebug(MessageFormat.format(pattern, new Object[] {arg}));
+        }
+    }
+    /**
+     * This implementation formats and logs the message with MSG_DEBUG,
+     * if debug messages are enabled.
+     * @param pattern The message pattern.
+     * @param arg0 The argument for <code>{0}</code>.
+     * @param arg1 The argument for <code>{1}</code>.
+     */
+    public void handleDebug(String pattern, Object arg0, Object arg1) {
+        if (isDebugEnabled()) {
+            handleDebug(MessageFormat.format(pattern, new Object[] {arg0,
+                    arg1}));
+        }
+    }
+    /**
+     * Indicates whether any build listener shows debug messages.
+     * Listeners, that are no BuildLogger or that do not tell their
+     * level, are assumed to show debug messages. The result is kept
+     * until publishTimings is called at the end of the execution.
+     * @return True, if debug messages may be shown.
+     */
+    public boolean isDebugEnabled() {
+        Boolean result = debugEnabled;
+        if (result == null) {
+            result = Boolean.valueOf(isDebugShown());
+            debugEnabled = result;
+        }
+        return result.booleanValue();
+    }
+    private boolean isDebugShown() {
+        Project p = getProject();
+        if (p == null) {
+            return true;
+        }
+        for (Iterator i = p.getBuildListeners().iterator(); i.hasNext();) {
+            BuildListener l = (BuildListener) i.next();
+            if (!(l instanceof BuildLogger)) {
+                return true;
+            }
+            if (getMessageOutputLevel((BuildLogger) l) >= Project.MSG_DEBUG) {
+                return true;
+            }
+        }
+        return false;
+    }
+    /**
+     * Gets the level of a logger. BuildLogger does not tell its level
+     * before Ant 1.10, so the method is called reflectively.
+     * @param logger The logger.
+     * @return The level or MSG_DEBUG if unknown.
+     */
+    private static int getMessageOutputLevel(BuildLogger logger) {
+        try {
+            Method m = logger.getClass().getMethod("getMessageOutputLevel",
+                    null);
+            return ((Integer) m.invoke(logger, null)).intValue();
+        } catch (Exception e) {
+            return Project.MSG_DEBUG;
+        }
+    }
 
+    /**
+     * This implementation accumulates the time per phase until
+     * publishTimings is called.
+     * @param phase The phase.
+     * @param nanos The time spent in nanoseconds.
+     */
+    public void handleTiming(String phase, long nanos) {
+        synchronized (timings) {
+            long[] t = (long[]) timings.get(phase);
+            if (t == null) {
+                t = new long[2];
+                timings.put(phase, t);
+            }
+            t[0] += nanos;
+            t[1]++;
+        }
+    }
+    /**
+     * Logs the accumulated timings with MSG_DEBUG and, if the
+     * timingsProperty attribute is set, sets the properties
+     * <code>&lt;timingsProperty&gt;.&lt;phase&gt;</code> to the time in
+     * milliseconds and <code>&lt;timingsProperty&gt;.&lt;phase&gt;.count</code>
+     * to the number of timed calls. Resets the timings and the cached
+     * debug level afterwards, as listeners may change until the next
+     * execution.
+     */
+    protected void publishTimings() {
+        debugEnabled = null;
+        TreeMap sorted;
+        synchronized (timings) {
+            sorted = new TreeMap(timings);
+            timings.clear();
+        }
+        StringBuffer all = new StringBuffer();
+        for (Iterator i = sorted.entrySet().iterator(); i.hasNext();) {
+            Map.Entry e = (Map.Entry) i.next();
+            String phase = (String) e.getKey();
+            long[] t = (long[]) e.getValue();
+            String ms = String.valueOf((t[0] / 1000L) / 1000.0);
+            log("timing " + phase + ": " + ms + "ms (" + t[1] + " calls)",
+                    Project.MSG_DEBUG);
+            if (timingsProperty != null) {
+                getProject().setProperty(timingsProperty + "." + phase, ms);
+                getProject().setProperty(timingsProperty + "." + phase
+                        + ".count", String.valueOf(t[1]));
+            }
+            if (all.length() > 0) {
+                all.append(',');
+            }
+            all.append(phase);
+        }
+        if (timingsProperty != null) {
+            getProject().setProperty(timingsProperty, all.toString());
+        }
+    }
+    /**
+     * Sets the prefix of the properties to publish the timings of
+     * the phases to. The property itself is set to the comma separated
+     * list of timed phases.
+     * @param timingsProperty The prefix.
+     */
+    public void setTimingsProperty(String timingsProperty) {
+        this.timingsProperty = timingsProperty;
+    }
     /**
      * Handles an error with respect to the failonerror attribute.
      *
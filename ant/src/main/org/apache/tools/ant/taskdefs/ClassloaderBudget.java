@@ -0,0 +1,229 @@
+/*
+ * Copyright  2005 The Apache Software Foundation
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.tools.ant.taskdefs;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+
+import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.MagicNames;
+import org.apache.tools.ant.Project;
+import org.apache.tools.ant.taskdefs.classloader.ClassLoaderStatistics;
+import org.apache.tools.ant.taskdefs.classloader.ClassloaderLocks;
+import org.apache.tools.ant.taskdefs.classloader.loader.LazyClassLoader;
+
+/**
+ * Limits the number of live named classloaders, that classloader tasks of a
+ * project created. If the property <code>ant.classloader.budget</code> is
+ * set and more loaders are alive, the least recently used idle loaders are
+ * evicted: their reference is removed and they are closed.
+ * <p>
+ * A loader is used, when it is created, modified or queried by a
+ * classloader task or - if it keeps statistics - when it looks up a class.
+ * A loader is not idle, while it is the parent or super loader of another
+ * live loader. The core, system, project and thread context loaders are
+ * never evicted, and neither is the loader of the task enforcing the
+ * budget.
+ * </p>
+ * @since Ant 1.7
+ */
+final class ClassloaderBudget {
+    /**
+     * The property defining the maximum number of live loaders.
+     */
+    static final String PROPERTY = "ant.classloader.budget";
+    private static final String REFERENCE = "ant.classloader.budget.tracker";
+    private static final class Entry {
+        private final ClassLoader loader;
+        private final ClassLoader parent;
+        private final ClassLoader superLoader;
+        private final ClassloaderTask task;
+        private long touched = System.currentTimeMillis();
+        private Entry(ClassloaderTask task, ClassLoader loader,
+                ClassLoader parent, ClassLoader superLoader) {
+            this.task = task;
+            this.loader = loader;
+            this.parent = parent;
+            this.superLoader = superLoader;
+        }
+        private long getLastUse() {
+            ClassLoader cl = loader;
+            if ((cl instanceof LazyClassLoader)
+                    && ((LazyClassLoader) cl).isCreated()) {
+                cl = ((LazyClassLoader) cl).getLoader();
+            }
+            if (cl instanceof ClassLoaderStatistics.Source) {
+                return Math.max(touched, ((ClassLoaderStatistics.Source) cl)
+                        .getStatistics().getLastUse());
+            }
+            return touched;
+        }
+        private boolean uses(ClassLoader cl) {
+            return (parent == cl) || (superLoader == cl);
+        }
+    }
+    // access order, so of equally old loaders the least recently
+    // touched comes first.
+    private final LinkedHashMap loaders = new LinkedHashMap(16, 0.75f, true);
+    private final Project project;
+    private ClassloaderBudget(Project project) {
+        this.project = project;
+    }
+    /**
+     * Gets the budget of a project.
+     * @param p The project.
+     * @return The budget or null, if the property is not set.
+     */
+    static ClassloaderBudget getBudget(Project p) {
+        if (p.getProperty(PROPERTY) == null) {
+            return null;
+        }
+        synchronized (ClassloaderBudget.class) {
+            ClassloaderBudget result = (ClassloaderBudget) p
+                    .getReference(REFERENCE);
+            if (result == null) {
+                result = new ClassloaderBudget(p);
+                p.addReference(REFERENCE, result);
+            }
+            return result;
+        }
+    }
+    /**
+     * Tracks a newly created loader, replacing a loader of the same name.
+     * @param task The task, that created the loader.
+     * @param cl The loader.
+     * @param parent The parent loader or null.
+     * @param superLoader The super loader or null.
+     */
+    synchronized void created(ClassloaderTask task, ClassLoader cl,
+            ClassLoader parent, ClassLoader superLoader) {
+        loaders.remove(task.getLoaderName());
+        loaders.put(task.getLoaderName(), new Entry(task, cl, parent,
+                superLoader));
+    }
+    /**
+     * Marks a loader as used.
+     * @param name The name of the loader.
+     */
+    synchronized void used(String name) {
+        Entry e = (Entry) loaders.get(name);
+        if (e != null) {
+            e.touched = System.currentTimeMillis();
+        }
+    }
+    /**
+     * Evicts idle loaders, until the budget is kept.
+     * @param ctx The task, that enforces the budget.
+     */
+    void enforce(ClassloaderTask ctx) {
+        int max = getMaximum(ctx);
+        while (true) {
+            String name;
+            Entry victim;
+            synchronized (this) {
+                removeStale();
+                if (loaders.size() <= max) {
+                    return;
+                }
+                name = findVictim(ctx.getLoaderName());
+                if (name == null) {
+                    ctx.log("classloader budget of " + max + " exceeded by "
+                            + (loaders.size() - max)
+                            + ", but no loader other than "
+                            + ctx.getLoaderName() + " is idle",
+                            Project.MSG_VERBOSE);
+                    return;
+                }
+                victim = (Entry) loaders.remove(name);
+            }
+            ctx.log("evicting classloader " + name + " (budget " + max
+                    + ", idle for " + (System.currentTimeMillis()
+                    - victim.getLastUse()) + "ms)", Project.MSG_INFO);
+            Lock lock = ClassloaderLocks.lockName(ctx, name);
+            try {
+                victim.task.dispose(victim.loader);
+            } catch (BuildException e) {
+                ctx.log("unable to evict classloader " + name + ": "
+                        + e.getMessage(), Project.MSG_WARN);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+    /**
+     * Finds the least recently used idle loader.
+     * @param exclude The name of the loader of the enforcing task, which is
+     *     never evicted by its own task.
+     * @return The name of the loader or null, if no loader is idle.
+     */
+    private String findVictim(String exclude) {
+        String result = null;
+        long oldest = Long.MAX_VALUE;
+        for (Iterator i = loaders.entrySet().iterator(); i.hasNext();) {
+            Map.Entry me = (Map.Entry) i.next();
+            Entry e = (Entry) me.getValue();
+            if (me.getKey().equals(exclude) || isProtected(e.loader)) {
+                continue;
+            }
+            long lastUse = e.getLastUse();
+            if (lastUse < oldest) {
+                oldest = lastUse;
+                result = (String) me.getKey();
+            }
+        }
+        return result;
+    }
+    private int getMaximum(ClassloaderTask ctx) {
+        String value = project.getProperty(PROPERTY);
+        try {
+            int result = Integer.parseInt(value.trim());
+            if (result >= 0) {
+                return result;
+            }
+        } catch (NumberFormatException e) {
+            // fall through
+        }
+        throw new BuildException("invalid value of " + PROPERTY + ": "
+                + value, ctx.getLocation());
+    }
+    private boolean isProtected(ClassLoader cl) {
+        if ((cl == project.getCoreLoader())
+                || (cl == ClassLoader.getSystemClassLoader())
+                || (cl == Project.class.getClassLoader())
+                || (cl == Thread.currentThread().getContextClassLoader())
+                || (cl == project.getReference(MagicNames.SYSTEM_LOADER_REF))) {
+            return true;
+        }
+        for (Iterator i = loaders.values().iterator(); i.hasNext();) {
+            if (((Entry) i.next()).uses(cl)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    private void removeStale() {
+        // loaders reset, disposed or replaced by other means
+        for (Iterator i = loaders.values().iterator(); i.hasNext();) {
+            Entry e = (Entry) i.next();
+            if (project.getReference(e.task.getLoaderId()) != e.loader) {
+                i.remove();
+            }
+        }
+    }
+}
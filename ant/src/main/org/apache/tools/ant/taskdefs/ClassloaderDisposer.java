@@ -0,0 +1,170 @@
+/*
+ * Copyright  2005 The Apache Software Foundation
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.tools.ant.taskdefs;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Vector;
+
+import org.apache.tools.ant.BuildEvent;
+import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.Project;
+import org.apache.tools.ant.SubBuildListener;
+import org.apache.tools.ant.Target;
+
+/**
+ * Disposes the target scoped classloaders of a project, when their target
+ * finishes. Loaders created outside of a target, f.e. at the top level of
+ * the buildfile, are disposed when the build finishes. Within a target, the
+ * loaders are disposed in the reverse order of their creation.
+ * @since Ant 1.7
+ */
+final class ClassloaderDisposer implements SubBuildListener {
+    private final HashMap byTarget = new HashMap();
+    private final Project project;
+    private ClassloaderDisposer(Project project) {
+        this.project = project;
+    }
+    /**
+     * Registers a target scoped classloader.
+     * @param task The task, that created the classloader.
+     * @param cl The classloader.
+     */
+    static void register(ClassloaderTask task, ClassLoader cl) {
+        Project p = task.getProject();
+        ClassloaderDisposer disposer = null;
+        synchronized (ClassloaderDisposer.class) {
+            // <ant> and <subant> copy the listeners of the calling
+            // project, including its disposer.
+            Vector listeners = p.getBuildListeners();
+            for (int i = 0; (disposer == null) && (i < listeners.size());
+                    i++) {
+                if ((listeners.get(i) instanceof ClassloaderDisposer)
+                        && (((ClassloaderDisposer) listeners.get(i))
+                                .project == p)) {
+                    disposer = (ClassloaderDisposer) listeners.get(i);
+                }
+            }
+            if (disposer == null) {
+                disposer = new ClassloaderDisposer(p);
+                p.addBuildListener(disposer);
+            }
+        }
+        disposer.add(task.getOwningTarget(), task, cl);
+    }
+    private synchronized void add(Target target, ClassloaderTask task,
+            ClassLoader cl) {
+        ArrayList loaders = (ArrayList) byTarget.get(target);
+        if (loaders == null) {
+            loaders = new ArrayList();
+            byTarget.put(target, loaders);
+        }
+        loaders.add(new Object[] {task, cl});
+    }
+    private void dispose(ArrayList loaders) {
+        if (loaders == null) {
+            return;
+        }
+        for (int i = loaders.size() - 1; i >= 0; i--) {
+            Object[] entry = (Object[]) loaders.get(i);
+            ClassloaderTask task = (ClassloaderTask) entry[0];
+            try {
+                task.dispose((ClassLoader) entry[1]);
+            } catch (BuildException e) {
+                project.log("unable to dispose classloader "
+                        + task.getLoaderName() + ": " + e.getMessage(),
+                        Project.MSG_WARN);
+            }
+        }
+    }
+    private void disposeAll() {
+        ArrayList all = new ArrayList();
+        synchronized (this) {
+            for (Iterator i = byTarget.values().iterator(); i.hasNext();) {
+                all.addAll((ArrayList) i.next());
+            }
+            byTarget.clear();
+        }
+        dispose(all);
+        project.removeBuildListener(this);
+    }
+    /**
+     * Disposes all remaining classloaders.
+     * @param event The event.
+     */
+    public void buildFinished(BuildEvent event) {
+        disposeAll();
+    }
+    /**
+     * Does nothing.
+     * @param event The event.
+     */
+    public void buildStarted(BuildEvent event) {
+    }
+    /**
+     * Does nothing.
+     * @param event The event.
+     */
+    public void messageLogged(BuildEvent event) {
+    }
+    /**
+     * Disposes all remaining classloaders, if the finished subbuild is
+     * the project of this disposer.
+     * @param event The event.
+     */
+    public void subBuildFinished(BuildEvent event) {
+        if (event.getProject() == project) {
+            disposeAll();
+        }
+    }
+    /**
+     * Does nothing.
+     * @param event The event.
+     */
+    public void subBuildStarted(BuildEvent event) {
+    }
+    /**
+     * Disposes the classloaders of the finished target.
+     * @param event The event.
+     */
+    public void targetFinished(BuildEvent event) {
+        ArrayList loaders;
+        synchronized (this) {
+            loaders = (ArrayList) byTarget.remove(event.getTarget());
+        }
+        dispose(loaders);
+    }
+    /**
+     * Does nothing.
+     * @param event The event.
+     */
+    public void targetStarted(BuildEvent event) {
+    }
+    /**
+     * Does nothing.
+     * @param event The event.
+     */
+    public void taskFinished(BuildEvent event) {
+    }
+    /**
+     * Does nothing.
+     * @param event The event.
+     */
+    public void taskStarted(BuildEvent event) {
+    }
+}
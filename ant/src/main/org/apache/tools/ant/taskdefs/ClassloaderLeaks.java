@@ -0,0 +1,87 @@
+/*
+ * Copyright  2005 The Apache Software Foundation
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.tools.ant.taskdefs;
+
+import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.Project;
+import org.apache.tools.ant.Task;
+import org.apache.tools.ant.taskdefs.classloader.ClassloaderTracker;
+
+/**
+ * Lists the classloaders, that have been reset or disposed by the
+ * classloader task, but are still reachable.
+ * @since Ant 1.7
+ */
+public class ClassloaderLeaks extends Task {
+    private boolean failOnLeak = false;
+    private boolean gc = true;
+    private String property = null;
+    /**
+     * Default constructor.
+     */
+    public ClassloaderLeaks() {
+    }
+    /**
+     * Executes this task.
+     */
+    public void execute() {
+        ClassloaderTracker.Leak[] leaks = ClassloaderTracker.getLeaks(gc);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < leaks.length; i++) {
+            long classes = leaks[i].getDefinedClasses();
+            log("classloader " + leaks[i].getName() + " ("
+                    + leaks[i].getLoaderClass() + ") released "
+                    + (now - leaks[i].getReleased()) + "ms ago is still "
+                    + "reachable, " + ((classes < 0) ? "unknown number of"
+                    : String.valueOf(classes)) + " classes defined",
+                    Project.MSG_WARN);
+        }
+        log(leaks.length + " released classloaders still reachable",
+                (leaks.length == 0) ? Project.MSG_VERBOSE : Project.MSG_INFO);
+        if (property != null) {
+            getProject().setNewProperty(property,
+                    String.valueOf(leaks.length));
+        }
+        if (failOnLeak && (leaks.length > 0)) {
+            throw new BuildException(leaks.length
+                    + " classloaders leaked", getLocation());
+        }
+    }
+    /**
+     * Sets the failOnLeak attribute.
+     * @param onOff <code>true</code> to fail, if a leaked classloader is
+     *     found.
+     */
+    public void setFailOnLeak(boolean onOff) {
+        this.failOnLeak = onOff;
+    }
+    /**
+     * Sets the gc attribute.
+     * @param onOff <code>false</code> to check without requesting
+     *     garbage collections before.
+     */
+    public void setGc(boolean onOff) {
+        this.gc = onOff;
+    }
+    /**
+     * Sets the property to put the number of leaked classloaders into.
+     * @param property Name of the property.
+     */
+    public void setProperty(String property) {
+        this.property = property;
+    }
+}
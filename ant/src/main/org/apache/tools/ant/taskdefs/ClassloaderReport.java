@@ -16,10 +16,12 @@
  */
 package org.apache.tools.ant.taskdefs;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
@@ -28,7 +30,9 @@ import java.util.TreeMap;
 import org.apache.tools.ant.AntTypeDefinition;
 import org.apache.tools.ant.BuildException;
 import org.apache.tools.ant.ComponentHelper;
+import org.apache.tools.ant.Project;
 import org.apache.tools.ant.taskdefs.classloader.ClassloaderContext;
+import org.apache.tools.ant.taskdefs.classloader.report.AsyncReporter;
 import org.apache.tools.ant.taskdefs.classloader.report.ClassloaderReportFlattenBuilder;
 import org.apache.tools.ant.taskdefs.classloader.report.ClassloaderReportFormatter;
 import org.apache.tools.ant.taskdefs.classloader.report.ClassloaderReportTextFormatter;
@@ -40,6 +44,7 @@ import org.apache.tools.ant.taskdefs.classloader.report.ClassloaderReportXMLForm
 import org.apache.tools.ant.taskdefs.classloader.report.FormattedAntLoggerReporter;
 import org.apache.tools.ant.taskdefs.classloader.report.ClassloaderReportTreeBuilder;
 import org.apache.tools.ant.taskdefs.classloader.report.FormattedPrintStreamReporter;
+import org.apache.tools.ant.taskdefs.classloader.report.TeeReporter;
 import org.apache.tools.ant.types.EnumeratedAttribute;
 /**
  * Creates a report for all currently used classloaders.
@@ -150,10 +155,77 @@ public class ClassloaderReport extends ClassloaderBase implements
             return new String[] {"flat", "tree"};
         }
     }
+    /**
+     * Nested output element. Each output receives the same report, so
+     * several formats can be written from a single traversal of the
+     * classloader hierarchy.
+     */
+    public static class Output {
+        private File destfile = null;
+        private Format format = null;
+        private Hierarchy hierarchy = null;
+        /**
+         * Default Constructor.
+         */
+        public Output() {
+        }
+        /**
+         * Gets the output file.
+         * @return The output file or null if the report goes to the log.
+         */
+        public File getDestfile() {
+            return destfile;
+        }
+        /**
+         * Gets the format, defaulting with respect to the destfile.
+         * @return The format.
+         */
+        public Format getFormat() {
+            if (format == null) {
+                return (destfile == null) ? new Format("txt") : new Format("xml");
+            }
+            return format;
+        }
+        /**
+         * Gets the hierarchy, defaulting with respect to the format.
+         * @return The hierarchy.
+         */
+        public Hierarchy getHierarchy() {
+            if (hierarchy == null) {
+                return getFormat().getDefaultHierarchy();
+            }
+            return hierarchy;
+        }
+        /**
+         * Sets the output file.
+         * @param file Output file.
+         */
+        public void setDestfile(File file) {
+            this.destfile = file;
+        }
+        /**
+         * Sets the format.
+         * @param f The format.
+         */
+        public void setFormat(Format f) {
+            this.format = f;
+        }
+        /**
+         * Sets the hierarchy.
+         * @param h The hierarchy.
+         */
+        public void setHierarchy(Hierarchy h) {
+            this.hierarchy = h;
+        }
+    }
+    private boolean async = false;
     private Format format = null;
     private Hierarchy hierarchy = null;
+    private boolean reportFootprint = false;
     private boolean reportPackages = true;
+    private int threads = 1;
     private File output = null;
+    private ArrayList outputs = new ArrayList();
     /**
      * Default constructor.
      */
@@ -161,22 +233,121 @@ public class ClassloaderReport extends ClassloaderBase implements
         super();
         setFailonerror(false);
     }
+    /**
+     * Creates a nested output element.
+     * @return The output element.
+     */
+    public Output createOutput() {
+        Output o = new Output();
+        outputs.add(o);
+        return o;
+    }
     /**
      * handle the report.
      */
     public void execute() {
+        Output[] outs = getOutputs();
+        // one builder per distinct hierarchy, all of them fed by the
+        // same traversal.
+        ClassloaderReportBuilder[] builders = new ClassloaderReportBuilder[outs.length];
+        ArrayList distinct = new ArrayList();
+        for (int i = 0; i < outs.length; i++) {
+            int idx = outs[i].getHierarchy().getIndex();
+            for (int j = 0; j < i; j++) {
+                if (outs[j].getHierarchy().getIndex() == idx) {
+                    builders[i] = builders[j];
+                    break;
+                }
+            }
+            if (builders[i] == null) {
+                builders[i] = outs[i].getHierarchy().newBuilder(this);
+                distinct.add(builders[i]);
+            }
+        }
+        ClassloaderReporter collector;
+        if (distinct.size() == 1) {
+            collector = (ClassloaderReporter) distinct.get(0);
+        } else {
+            collector = new TeeReporter((ClassloaderReporter[]) distinct
+                    .toArray(new ClassloaderReporter[distinct.size()]));
+        }
+        long start = System.nanoTime();
+        collect(collector);
+        handleTiming(TIMING_COLLECT, System.nanoTime() - start);
+        ArrayList streams = new ArrayList();
+        ArrayList asyncs = new ArrayList();
+        RuntimeException failure = null;
+        boolean completed = false;
+        start = System.nanoTime();
+        try {
+            for (int i = 0; i < distinct.size(); i++) {
+                ClassloaderReportBuilder builder = (ClassloaderReportBuilder) distinct
+                        .get(i);
+                ArrayList dest = new ArrayList();
+                for (int j = 0; j < outs.length; j++) {
+                    if (builders[j] == builder) {
+                        dest.add(newReporter(outs[j], streams, asyncs));
+                    }
+                }
+                if (dest.size() == 1) {
+                    builder.execute((ClassloaderReporter) dest.get(0));
+                } else {
+                    builder.execute(new TeeReporter((ClassloaderReporter[]) dest
+                            .toArray(new ClassloaderReporter[dest.size()])));
+                }
+            }
+            completed = true;
+        } finally {
+            // each writer is closed once, also if the report was aborted;
+            // the first failure is thrown, once all outputs are closed.
+            for (int i = 0; i < asyncs.size(); i++) {
+                try {
+                    ((AsyncReporter) asyncs.get(i)).close();
+                } catch (RuntimeException e) {
+                    if (!completed || (failure != null)) {
+                        log("async report writer failed: " + e.getMessage(),
+                                Project.MSG_WARN);
+                    } else {
+                        failure = e;
+                    }
+                }
+            }
+            for (int i = 0; i < streams.size(); i++) {
+                ((PrintStream) streams.get(i)).close();
+            }
+            handleTiming(TIMING_WRITE, System.nanoTime() - start);
+            publishTimings();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+    /**
+     * Creates a report without executing this task. Used to create
+     * reports on demand, f.e. from management clients.
+     * @param f The format or null for the default format.
+     * @param h The hierarchy or null for the format's default hierarchy.
+     * @return The report.
+     */
+    public String createReport(Format f, Hierarchy h) {
+        Output out = new Output();
+        out.setFormat(f);
+        out.setHierarchy(h);
+        ClassloaderReportBuilder builder = out.getHierarchy().newBuilder(this);
+        collect(builder);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        PrintStream printStream = new PrintStream(bos);
+        builder.execute(new FormattedPrintStreamReporter(out.getFormat()
+                .newFormatter(), printStream));
+        printStream.close();
+        return bos.toString();
+    }
+    private void collect(ClassloaderReporter to) {
         // let's hope, that no classloader implementation overrides
         // equals/hashCode
         // for 1.4 IdentityHashMap should be used for handlesByLoader
         HashMap handlesByLoader = new HashMap();
         TreeMap loaderByHandle = new TreeMap();
-        if (format == null) {
-            format = (output == null) ? new Format("txt") : new Format("xml");
-        }
-        if (hierarchy == null) {
-            hierarchy = format.getDefaultHierarchy();
-        }
-        ClassloaderReportBuilder to = hierarchy.newBuilder(this);
         boolean addSuccess = true;
         ClassLoader extCl = ClassLoader.getSystemClassLoader().getParent();
         ClassloaderReportUtil reportUtil = ClassloaderReportUtil
@@ -246,24 +417,66 @@ public class ClassloaderReport extends ClassloaderBase implements
         }
         rNames = null;
         reportUtil.report(this, handlesByLoader, loaderByHandle, to, addSuccess);
-        ClassloaderReporter destReporter;
-        PrintStream printStream = null;
-        if (output != null) {
+    }
+    /**
+     * Gets the outputs to write the report to. The attributes
+     * destfile, format and hierarchy define an implicit output, which
+     * is used if no nested output is specified or if any of these
+     * attributes is set.
+     * @return The outputs.
+     */
+    private Output[] getOutputs() {
+        ArrayList result = new ArrayList(outputs);
+        if (result.isEmpty() || (output != null) || (format != null)
+                || (hierarchy != null)) {
+            Output o = new Output();
+            o.setDestfile(output);
+            o.setFormat(format);
+            o.setHierarchy(hierarchy);
+            result.add(0, o);
+        }
+        return (Output[]) result.toArray(new Output[result.size()]);
+    }
+    private ClassloaderReporter newReporter(Output out, ArrayList streams,
+            ArrayList asyncs) {
+        ClassloaderReporter result;
+        if (out.getDestfile() == null) {
+            result = new FormattedAntLoggerReporter(this, out.getFormat()
+                    .newFormatter());
+        } else {
             try {
-                printStream = new PrintStream(new FileOutputStream(output));
-                destReporter = new FormattedPrintStreamReporter(
-                    format.newFormatter(), printStream);
+                PrintStream printStream = new PrintStream(new FileOutputStream(
+                        out.getDestfile()));
+                streams.add(printStream);
+                result = new FormattedPrintStreamReporter(out.getFormat()
+                        .newFormatter(), printStream);
             } catch (IOException e) {
                 throw new BuildException(e);
             }
-        } else {
-            destReporter = new FormattedAntLoggerReporter(this,
-                    format.newFormatter());
         }
-        to.execute(destReporter);
-        if (printStream != null) {
-            printStream.close();
+        if (async) {
+            AsyncReporter asyncReporter = new AsyncReporter(result);
+            asyncs.add(asyncReporter);
+            result = asyncReporter;
         }
+        return result;
+    }
+    /**
+     * Gets the number of threads used to collect the data of the
+     * classloaders.
+     * @return The number of threads.
+     */
+    public int getThreads() {
+        return threads;
+    }
+    /**
+     * Indicates whether the estimated memory footprint should be reported.
+     *
+     * @return <code>true</code>, if the footprint should be reported,
+     *         else <code>false</code>.
+     */
+    public boolean isReportFootprint() {
+        return reportFootprint;
     }
     /**
      * Indicates whether packages should been reported
@@ -274,6 +487,16 @@ public class ClassloaderReport extends ClassloaderBase implements
     public boolean isReportPackages() {
         return reportPackages;
     }
+    /**
+     * Sets the async attribute.
+     *
+     * @param onOff
+     *            Indicates whether the outputs are formatted and written on
+     *            background threads. Defaults to <code>false</code>.
+     */
+    public void setAsync(boolean onOff) {
+        async = onOff;
+    }
     /**
      * Sets the output file.
      * @param file Output file.
@@ -295,6 +518,17 @@ public class ClassloaderReport extends ClassloaderBase implements
     public void setHierarchy(Hierarchy h) {
         this.hierarchy = h;
     }
+    /**
+     * Sets the reportFootprint attribute.
+     *
+     * @param onOff
+     *            Indicates whether to include the estimated memory footprint
+     *            of each classloader in the report. Defaults to
+     *            <code>false</code>.
+     */
+    public void setReportfootprint(boolean onOff) {
+        reportFootprint = onOff;
+    }
     /**
      * Sets the reportPackages attribute.
      *
@@ -305,5 +539,20 @@ public class ClassloaderReport extends ClassloaderBase implements
     public void setReportpackages(boolean onOff) {
         reportPackages = onOff;
     }
+    /**
+     * Sets the number of threads used to collect the data of the
+     * classloaders. The report is the same as if collected by a single
+     * thread.
+     *
+     * @param threads
+     *            The number of threads. Defaults to <code>1</code>.
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new BuildException("threads must be at least 1",
+                    getLocation());
+        }
+        this.threads = threads;
+    }
 
 }
@@ -0,0 +1,237 @@
+/*
+ * Copyright  2005 The Apache Software Foundation
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.tools.ant.taskdefs;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeMap;
+
+import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.Project;
+import org.apache.tools.ant.Task;
+import org.apache.tools.ant.taskdefs.classloader.report.ClassloaderReportReader;
+
+/**
+ * Compares two classloader reports written in xml format.
+ * <p>
+ * Both reports are read a classloader at a time; a classloader is held in
+ * memory only until its counterpart has been read from the other report.
+ * For reports with the same loader order, this bounds memory by the data of
+ * a single classloader. Entries, packages, roles and attributes of matching
+ * classloaders are compared by a sorted merge.
+ * </p>
+ * @since Ant1.7
+ */
+public class ClassloaderReportDiff extends Task {
+    private File destfile = null;
+    private int differences;
+    private String header;
+    private File newfile = null;
+    private File oldfile = null;
+    private PrintStream out;
+    private String property = null;
+    /**
+     * Default constructor.
+     */
+    public ClassloaderReportDiff() {
+    }
+    /**
+     * compares the reports.
+     */
+    public void execute() {
+        if (oldfile == null) {
+            throw new BuildException("attribute oldfile is required",
+                    getLocation());
+        }
+        if (newfile == null) {
+            throw new BuildException("attribute newfile is required",
+                    getLocation());
+        }
+        differences = 0;
+        ClassloaderReportReader oldReader = null;
+        ClassloaderReportReader newReader = null;
+        out = null;
+        try {
+            oldReader = new ClassloaderReportReader(new FileReader(oldfile));
+            newReader = new ClassloaderReportReader(new FileReader(newfile));
+            if (destfile != null) {
+                out = new PrintStream(new FileOutputStream(destfile));
+            }
+            diff(oldReader, newReader);
+        } catch (IOException e) {
+            throw new BuildException(e, getLocation());
+        } finally {
+            close(oldReader);
+            close(newReader);
+            if (out != null) {
+                out.close();
+                out = null;
+            }
+        }
+        log(differences + " difference(s) found between " + oldfile
+                + " and " + newfile, Project.MSG_VERBOSE);
+        if ((property != null) && (differences > 0)) {
+            getProject().setNewProperty(property, String.valueOf(differences));
+        }
+    }
+    private void close(ClassloaderReportReader reader) {
+        if (reader != null) {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+    private void compare(String what, List oldList, List newList) {
+        ArrayList o = new ArrayList(oldList);
+        ArrayList n = new ArrayList(newList);
+        Collections.sort(o);
+        Collections.sort(n);
+        int i = 0;
+        int j = 0;
+        while ((i < o.size()) || (j < n.size())) {
+            int cmp;
+            if (i >= o.size()) {
+                cmp = 1;
+            } else if (j >= n.size()) {
+                cmp = -1;
+            } else {
+                cmp = ((String) o.get(i)).compareTo((String) n.get(j));
+            }
+            if (cmp < 0) {
+                difference("- " + what + " " + o.get(i++));
+            } else if (cmp > 0) {
+                difference("+ " + what + " " + n.get(j++));
+            } else {
+                i++;
+                j++;
+            }
+        }
+    }
+    private void compare(String what, String oldValue, String newValue) {
+        if ((oldValue == null) ? (newValue != null) : !oldValue
+                .equals(newValue)) {
+            if (oldValue != null) {
+                difference("- " + what + " " + oldValue);
+            }
+            if (newValue != null) {
+                difference("+ " + what + " " + newValue);
+            }
+        }
+    }
+    private void compare(ClassloaderReportReader.Loader o,
+            ClassloaderReportReader.Loader n) {
+        header = "classloader " + o.getHandle() + ":";
+        compare("class", o.getClassName(), n.getClassName());
+        compare("parent", o.getParent(), n.getParent());
+        compare("attribute", o.getAttributes(), n.getAttributes());
+        compare("entry", o.getEntries(), n.getEntries());
+        compare("role", o.getRoles(), n.getRoles());
+        compare("package", o.getPackages(), n.getPackages());
+        header = null;
+    }
+    private void diff(ClassloaderReportReader oldReader,
+            ClassloaderReportReader newReader) throws IOException {
+        TreeMap pendingOld = new TreeMap();
+        TreeMap pendingNew = new TreeMap();
+        ClassloaderReportReader.Loader o = oldReader.next();
+        ClassloaderReportReader.Loader n = newReader.next();
+        while ((o != null) || (n != null)) {
+            if (o != null) {
+                ClassloaderReportReader.Loader match =
+                    (ClassloaderReportReader.Loader) pendingNew.remove(o
+                        .getHandle());
+                if (match != null) {
+                    compare(o, match);
+                } else {
+                    pendingOld.put(o.getHandle(), o);
+                }
+                o = oldReader.next();
+            }
+            if (n != null) {
+                ClassloaderReportReader.Loader match =
+                    (ClassloaderReportReader.Loader) pendingOld.remove(n
+                        .getHandle());
+                if (match != null) {
+                    compare(match, n);
+                } else {
+                    pendingNew.put(n.getHandle(), n);
+                }
+                n = newReader.next();
+            }
+        }
+        for (Iterator i = pendingOld.keySet().iterator(); i.hasNext();) {
+            difference("- classloader " + i.next());
+        }
+        for (Iterator i = pendingNew.keySet().iterator(); i.hasNext();) {
+            difference("+ classloader " + i.next());
+        }
+    }
+    private void difference(String line) {
+        if (header != null) {
+            println(header);
+            header = null;
+        }
+        differences++;
+        println(line.startsWith("classloader", 2) ? line : "  " + line);
+    }
+    private void println(String line) {
+        if (out != null) {
+            out.println(line);
+        } else {
+            log(line);
+        }
+    }
+    /**
+     * Sets the output file.
+     * @param file Output file. If not set, the differences are written
+     *            to the log.
+     */
+    public void setDestfile(File file) {
+        this.destfile = file;
+    }
+    /**
+     * Sets the newer report.
+     * @param file The report to compare against the older one.
+     */
+    public void setNewfile(File file) {
+        this.newfile = file;
+    }
+    /**
+     * Sets the older report.
+     * @param file The report to compare with.
+     */
+    public void setOldfile(File file) {
+        this.oldfile = file;
+    }
+    /**
+     * Sets the name of a property to set to the number of differences,
+     * if the reports differ.
+     * @param property The name of the property.
+     */
+    public void setProperty(String property) {
+        this.property = property;
+    }
+}
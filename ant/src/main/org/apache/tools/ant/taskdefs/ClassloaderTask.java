@@ -16,14 +16,29 @@
  */
 package org.apache.tools.ant.taskdefs;
 
+import java.io.File;
+import java.util.Hashtable;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.locks.Lock;
+
 import org.apache.tools.ant.BuildException;
 import org.apache.tools.ant.Project;
 import org.apache.tools.ant.taskdefs.classloader.ClassLoaderAdapter;
 import org.apache.tools.ant.taskdefs.classloader.ClassLoaderAdapterAction;
 import org.apache.tools.ant.taskdefs.classloader.ClassloaderContext;
+import org.apache.tools.ant.taskdefs.classloader.ClassloaderDownloadCache;
+import org.apache.tools.ant.taskdefs.classloader.ClassloaderEvents;
+import org.apache.tools.ant.taskdefs.classloader.ClassloaderLocks;
+import org.apache.tools.ant.taskdefs.classloader.ClassloaderTracker;
 import org.apache.tools.ant.taskdefs.classloader.ClassLoaderHandler;
 import org.apache.tools.ant.taskdefs.classloader.ClassLoaderParameters;
 import org.apache.tools.ant.taskdefs.classloader.ClassloaderAdapterException;
+import org.apache.tools.ant.taskdefs.classloader.jmx.ClassLoaderInfo;
+import org.apache.tools.ant.taskdefs.classloader.jmx.ClassloaderRegistry;
+import org.apache.tools.ant.taskdefs.classloader.loader.ClassBytesCache;
+import org.apache.tools.ant.taskdefs.classloader.loader.LazyClassLoader;
 import org.apache.tools.ant.types.AntLoaderParameters;
 import org.apache.tools.ant.types.EnumeratedAttribute;
 import org.apache.tools.ant.types.LoaderHandler;
@@ -125,16 +140,74 @@ public class ClassloaderTask extends ClassloaderBase implements
         }
     }
 
+    /**
+     * Enumeration for the values of scope attribute.
+     */
+    public static class Scope extends EnumeratedAttribute {
+        /** Enumerated values */
+        private static final int BUILD = 0, TARGET = 1;
+        /**
+         * Default Constructor.
+         */
+        public Scope() {
+        }
+        /**
+         * Value'd Constructor.
+         *
+         * @param value
+         *            One of enumerated values.
+         */
+        public Scope(String value) {
+            setValue(value);
+        }
+        /**
+         * Get the values.
+         *
+         * @return An array of the allowed values for this attribute.
+         */
+        public String[] getValues() {
+            return new String[] {"build", "target"};
+        }
+        /**
+         * Indicates whether the classloader is disposed at the end of
+         * the current target.
+         *
+         * @return <code>true</code>, if the classloader is target scoped,
+         *         <code>false</code> otherwise.
+         */
+        public boolean isTarget() {
+            return (getIndex() == TARGET);
+        }
+    }
+
+    /**
+     * The property defining the capacity of the class bytes cache in bytes.
+     */
+    public static final String CLASS_CACHE_PROPERTY =
+        "ant.classloader.classcache";
+    /**
+     * The property defining the directory to download remote classpath
+     * entries to.
+     */
+    public static final String DOWNLOAD_CACHE_PROPERTY =
+        "ant.classloader.downloadcache";
+    private static final String DOWNLOAD_CACHE_REFERENCE =
+        "ant.classloader.downloadcache.instance";
     private URLPath classpath = null;
     private ClassloaderTask.DuplicateEntry duplicateEntry = new ClassloaderTask.DuplicateEntry(
             "omit");
     private ClassLoaderHandler handler = null;
+    private boolean jmx = false;
+    private boolean lazy = false;
+    private boolean prefetch = false;
+    private volatile FutureTask prefetched = null;
     private LoaderRef loader = null;
     private String loaderName = null;
     private ClassLoaderParameters parameters = null;
     private LoaderRef parentLoader = null;
     private String property = null;
     private boolean reset = false;
+    private ClassloaderTask.Scope scope = new ClassloaderTask.Scope("build");
     private LoaderRef superLoader = null;
     /**
      * Default Constructor.
@@ -221,14 +294,42 @@ public class ClassloaderTask extends ClassloaderBase implements
         if (loader == null) {
             throw new BuildException("no loader specified");
         }
-        if (!executeCreateModify()) {
-            return;
+        if (scope.isTarget() && !isNamedLoader()) {
+            throw new BuildException("scope target is not supported for "
+                    + loader.getName(), getLocation());
+        }
+        if (prefetch && !lazy) {
+            throw new BuildException("prefetch requires lazy=\"true\"",
+                    getLocation());
         }
-        if (property != null) {
-            this.executeProperty();
+        try {
+            if (!executeCreateModify()) {
+                return;
+            }
+            if (property != null) {
+                this.executeProperty();
+            }
+        } finally {
+            publishTimings();
         }
     }
     private boolean executeCreateModify() {
+        // tasks for the same loader, f.e. in parallel, must not interleave.
+        Lock lock = ClassloaderLocks.lockName(this, getLoaderName());
+        boolean result;
+        try {
+            result = executeCreateModifyLocked();
+        } finally {
+            lock.unlock();
+        }
+        // evicting locks the evicted loaders, so this loader is unlocked.
+        ClassloaderBudget budget = ClassloaderBudget.getBudget(getProject());
+        if (budget != null) {
+            budget.enforce(this);
+        }
+        return result;
+    }
+    private boolean executeCreateModifyLocked() {
         URLPath classPath = getClasspath();
         ClassLoader classloader = null;
         // Are any other references held ? Can we 'close' the loader
@@ -236,8 +337,15 @@ public class ClassloaderTask extends ClassloaderBase implements
         // Can we replace the system classloader by just changing the
         // referenced object?
         // however, is reset really useful?
+        ClassLoader replaced = null;
         if (!reset) {
             classloader = loader.getClassLoader(null, false, true);
+        } else {
+            replaced = loader.getClassLoader(null, false, true);
+        }
+        if ((classloader instanceof LazyClassLoader) && (classPath != null)) {
+            // appending requires the classloader.
+            classloader = ((LazyClassLoader) classloader).getLoader();
         }
 
         boolean create = (classloader == null);
@@ -264,23 +372,49 @@ public class ClassloaderTask extends ClassloaderBase implements
                     + " is not possible");
             return false;
         }
-        log("handling " + this.getLoaderName() + ": "
-                + ((classloader == null) ? "not " : "") + "found, cp="
-                + this.getClasspath(), Project.MSG_DEBUG);
+        if (isDebugEnabled()) {
+            // the classpath is resolved to print it.
+            log("handling " + this.getLoaderName() + ": "
+                    + ((classloader == null) ? "not " : "") + "found, cp="
+                    + this.getClasspath(), Project.MSG_DEBUG);
+        }
         if (classloader == null) {
             ClassLoaderHandler handler = getHandler();
             if (handler == null) {
                 throw new BuildException("internal error: handler is null");
             }
-            ClassLoaderAdapter adapter = handler.getAdapter(this);
+            final ClassLoaderAdapter adapter = handler.getAdapter(this);
             if (adapter == null) {
                 return false;
             }
-            classloader = adapter.createClassLoader(this);
-            if (classloader == null) {
+            if (lazy) {
+                if (prefetch && (classPath != null)) {
+                    startPrefetch();
+                }
+                final LazyClassLoader[] placeholder = new LazyClassLoader[1];
+                placeholder[0] = new LazyClassLoader(getLoaderName(),
+                        new LazyClassLoader.Factory() {
+                            public ClassLoader createClassLoader() {
+                                return newClassLoader(adapter,
+                                        placeholder[0]);
+                            }
+                        });
+                loader.setClassLoader(placeholder[0]);
+                log("creation of " + getLoaderName() + " deferred",
+                        Project.MSG_DEBUG);
+            } else if (newClassLoader(adapter, null) == null) {
                 return false;
             }
-            loader.setClassLoader(classloader);
+            ClassLoader created = loader.getClassLoader(null, false, true);
+            if ((replaced != null) && (replaced != created)) {
+                ClassloaderTracker.released(getCreatedOrNull(replaced));
+            }
+            if (lazy) {
+                trackCreated(created);
+            }
+            if (scope.isTarget()) {
+                ClassloaderDisposer.register(this, created);
+            }
         } else if (classPath != null) {
             ClassLoaderAdapter adapter;
             try {
@@ -299,15 +433,241 @@ public class ClassloaderTask extends ClassloaderBase implements
                             e);
                 }
             }
-            if (!adapter.appendClasspath(this, classloader)) {
+            Object ev = ClassloaderEvents.getEvents().begin(
+                    ClassloaderEvents.APPEND);
+            // the duplicate check and the append are one step.
+            Lock lock = ClassloaderLocks.lockLoader(this, classloader);
+            long start = System.nanoTime();
+            boolean appended;
+            try {
+                appended = adapter.appendClasspath(this, classloader);
+            } finally {
+                handleTiming(TIMING_APPEND, System.nanoTime() - start);
+                lock.unlock();
+            }
+            if (ev != null) {
+                ClassloaderEvents.getEvents().commit(ev, getLoaderName(),
+                        adapter.getClass().getName(), classPath.size());
+            }
+            trackUsed();
+            if (!appended) {
                 log("NO APPEND", Project.MSG_DEBUG);
                 return false;
             }
+            if (jmx) {
+                registerMBean(classloader);
+            }
         }
         return true;
     }
+    /**
+     * Creates the classloader and sets the reference to it. A deferred
+     * classloader is created on first use of its placeholder, after this
+     * task has published its timings, so its creation isn't timed. If the
+     * placeholder no longer is the reference - it has been reset, disposed
+     * or evicted -, the created classloader only serves the holders of the
+     * placeholder and is neither referenced nor tracked.
+     * @param adapter The adapter creating the classloader.
+     * @param placeholder The placeholder of a deferred classloader or null.
+     * @return The classloader or null, if it could not be created.
+     */
+    private ClassLoader newClassLoader(ClassLoaderAdapter adapter,
+            LazyClassLoader placeholder) {
+        URLPath classPath = getClasspath();
+        Object ev = ClassloaderEvents.getEvents().begin(
+                ClassloaderEvents.CREATE);
+        configureClassCache();
+        long start = System.nanoTime();
+        ClassLoader classloader = adapter.createClassLoader(this);
+        if (placeholder == null) {
+            handleTiming(TIMING_CREATE, System.nanoTime() - start);
+        }
+        if (ev != null) {
+            ClassloaderEvents.getEvents().commit(ev, getLoaderName(),
+                    adapter.getClass().getName(),
+                    (classPath == null) ? 0 : classPath.size());
+        }
+        if (classloader == null) {
+            return null;
+        }
+        if (!replaceReference(placeholder, classloader)) {
+            log(getLoaderName() + " created for a replaced placeholder,"
+                    + " it is not referenced", Project.MSG_VERBOSE);
+            return classloader;
+        }
+        ClassloaderTracker.track(getLoaderName(), classloader);
+        trackCreated(classloader);
+        if (jmx) {
+            registerMBean(classloader);
+        }
+        return classloader;
+    }
+    /**
+     * Sets the reference to a created classloader. The placeholder of a
+     * deferred classloader is only replaced, if it still is the reference.
+     * @return False, if the placeholder has been replaced meanwhile.
+     */
+    private boolean replaceReference(LazyClassLoader placeholder,
+            ClassLoader cl) {
+        String id = loader.getLoaderId();
+        if ((placeholder == null) || (id == null)) {
+            loader.setClassLoader(cl);
+            return true;
+        }
+        Hashtable refs = getProject().getReferences();
+        synchronized (refs) {
+            if (refs.get(id) != placeholder) {
+                return false;
+            }
+            loader.setClassLoader(cl);
+            return true;
+        }
+    }
+    private void configureClassCache() {
+        String value = getProject().getProperty(CLASS_CACHE_PROPERTY);
+        if (value == null) {
+            return;
+        }
+        long capacity = -1;
+        try {
+            capacity = Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            // fall through
+        }
+        if (capacity < 0) {
+            throw new BuildException("invalid value of "
+                    + CLASS_CACHE_PROPERTY + ": " + value, getLocation());
+        }
+        // the cache must leave direct memory for the JVM's own buffers.
+        long limit = ClassBytesCache.getDirectMemoryLimit() / 2;
+        if (capacity > limit) {
+            log(CLASS_CACHE_PROPERTY + " of " + capacity + " exceeds half of "
+                    + "the direct memory limit, using " + limit,
+                    Project.MSG_WARN);
+            capacity = limit;
+        }
+        if (capacity != ClassBytesCache.getCapacity()) {
+            log("class bytes cache capacity set to " + capacity,
+                    Project.MSG_VERBOSE);
+            ClassBytesCache.setCapacity(capacity);
+        }
+    }
+    private String[] localizeRemote(String[] entries) {
+        String value = getProject().getProperty(DOWNLOAD_CACHE_PROPERTY);
+        if (value == null) {
+            return entries;
+        }
+        File dir = getProject().resolveFile(value);
+        ClassloaderDownloadCache cache;
+        synchronized (ClassloaderDownloadCache.class) {
+            cache = (ClassloaderDownloadCache) getProject().getReference(
+                    DOWNLOAD_CACHE_REFERENCE);
+            if ((cache == null) || !cache.getDirectory().equals(dir)) {
+                cache = new ClassloaderDownloadCache(dir);
+                getProject().addReference(DOWNLOAD_CACHE_REFERENCE, cache);
+            }
+        }
+        return cache.localize(this, entries);
+    }
+    private void trackCreated(ClassLoader cl) {
+        ClassloaderBudget budget = ClassloaderBudget.getBudget(getProject());
+        if ((budget != null) && isNamedLoader()) {
+            budget.created(this, cl, getReferenced(parentLoader),
+                    getReferenced(superLoader));
+        }
+    }
+    private void trackUsed() {
+        ClassloaderBudget budget = ClassloaderBudget.getBudget(getProject());
+        if (budget != null) {
+            budget.used(getLoaderName());
+        }
+    }
+    private static ClassLoader getReferenced(LoaderRef ref) {
+        return (ref == null) ? null : ref.getClassLoader(null, false, true);
+    }
+    /**
+     * Disposes a target scoped classloader created by this task. The
+     * reference is removed, if it still denotes the classloader - or the
+     * classloader a deferred one created -, and the classloader is closed
+     * by its adapter.
+     * @param cl The classloader.
+     */
+    void dispose(ClassLoader cl) {
+        String id = loader.getLoaderId();
+        Hashtable refs = getProject().getReferences();
+        synchronized (refs) {
+            // a deferred loader replaces its reference, when it is created.
+            Object current = refs.get(id);
+            if ((current == cl) || ((current != null)
+                    && (current == getCreatedOrNull(cl)))) {
+                refs.remove(id);
+            }
+        }
+        if ((cl instanceof LazyClassLoader)
+                && !((LazyClassLoader) cl).isCreated()) {
+            log(getLoaderName() + " disposed, it has never been created",
+                    Project.MSG_VERBOSE);
+            return;
+        }
+        ClassLoader created = getCreated(cl);
+        ClassloaderTracker.released(created);
+        if (jmx) {
+            ClassloaderRegistry registry = ClassloaderRegistry.getRegistry();
+            ClassLoaderInfo info = registry.getInfo(getLoaderName());
+            if ((info != null) && (info.getClassLoader() == created)) {
+                registry.unregister(getLoaderName());
+            }
+        }
+        ClassLoaderAdapter adapter;
+        try {
+            adapter = getUtil().findAdapter(this, created,
+                    ClassLoaderAdapterAction.CLOSE);
+        } catch (ClassloaderAdapterException e) {
+            log(getLoaderName() + " disposed, closing is not supported",
+                    Project.MSG_VERBOSE);
+            return;
+        }
+        if (adapter.closeClassLoader(this, created)) {
+            log(getLoaderName() + " disposed", Project.MSG_VERBOSE);
+        }
+    }
+    private boolean isNamedLoader() {
+        String id = loader.getLoaderId();
+        return (id != null) && !id.equals(
+                LoaderRef.LoaderSpec.MAGIC_NAMES[LoaderRef.LoaderSpec.CORE]);
+    }
+    private static ClassLoader getCreatedOrNull(ClassLoader cl) {
+        if ((cl instanceof LazyClassLoader)
+                && !((LazyClassLoader) cl).isCreated()) {
+            return null;
+        }
+        return getCreated(cl);
+    }
+    private static ClassLoader getCreated(ClassLoader cl) {
+        if (cl instanceof LazyClassLoader) {
+            return ((LazyClassLoader) cl).getLoader();
+        }
+        return cl;
+    }
+    private void registerMBean(ClassLoader cl) {
+        String[] entries = null;
+        try {
+            entries = getUtil().findAdapter(this, cl,
+                    ClassLoaderAdapterAction.GETPATH).getClasspath(this, cl,
+                    false);
+        } catch (ClassloaderAdapterException e) {
+            log("entries of " + getLoaderName() + " not investigatable",
+                    Project.MSG_VERBOSE);
+        }
+        ClassloaderRegistry.getRegistry().register(getProject(),
+                getLoaderName(), cl, (parentLoader == null) ? null
+                        : parentLoader.getName(), entries);
+        handleDebug("registered MBean {0}",
+                ClassloaderRegistry.getObjectName(getLoaderName()));
+    }
     private boolean executeProperty() {
-        ClassLoader cl = loader.getClassLoader(null);
+        trackUsed();
+        ClassLoader cl = getCreated(loader.getClassLoader(null));
         ClassLoaderAdapter adapter;
         try {
             adapter = getUtil().findAdapter(this, cl,
@@ -349,14 +709,58 @@ public class ClassloaderTask extends ClassloaderBase implements
      * @return The classpath.
      */
     public String[] getClasspathFiles() {
-        return classpath.toPath().list();
+        long start = System.nanoTime();
+        String[] result = classpath.toPath().list();
+        handleTiming(TIMING_RESOLVE, System.nanoTime() - start);
+        return result;
     }
     /**
      * Gets the classpath to create or append as urls.
      * @return The classpath.
      */
     public String[] getClasspathURLs() {
-        return classpath.list();
+        long start = System.nanoTime();
+        String[] result = (prefetched != null) ? getPrefetched()
+                : classpath.list();
+        result = localizeRemote(result);
+        handleTiming(TIMING_RESOLVE, System.nanoTime() - start);
+        return result;
+    }
+    /**
+     * Starts resolving the classpath of a deferred classloader in a
+     * background thread. Only the urls are resolved, as they are what the
+     * adapters create classloaders from; getClasspathURLs waits for the
+     * resolution to finish.
+     */
+    private void startPrefetch() {
+        final URLPath cp = classpath;
+        FutureTask task = new FutureTask(new Callable() {
+            public Object call() {
+                return cp.list();
+            }
+        });
+        Thread t = new Thread(task, "classloader prefetch " + getLoaderName());
+        t.setDaemon(true);
+        prefetched = task;
+        t.start();
+    }
+    private String[] getPrefetched() {
+        try {
+            return (String[]) prefetched.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BuildException("interrupted while resolving the "
+                    + "classpath of " + getLoaderName(), e, getLocation());
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new BuildException(cause, getLocation());
+        }
     }
     /**
      * Gets the handler to create a new classloader.
@@ -377,10 +781,34 @@ public class ClassloaderTask extends ClassloaderBase implements
      */
     public String getLoaderName() {
         if (loaderName == null) {
+            if (loader == null) {
+                throw new BuildException("no loader specified", getLocation());
+            }
             loaderName = loader.getName();
         }
         return loaderName;
     }
+    /**
+     * Gets the reference id of the loader.
+     * @return The reference id or null if the loader has none.
+     */
+    String getLoaderId() {
+        return loader.getLoaderId();
+    }
+    /**
+     * Gets the name of the parentLoader attribute.
+     * @return The name or null if not specified.
+     */
+    String getParentLoaderName() {
+        return (parentLoader == null) ? null : parentLoader.getName();
+    }
+    /**
+     * Gets the name of the superLoader attribute.
+     * @return The name or null if not specified.
+     */
+    String getSuperLoaderName() {
+        return (superLoader == null) ? null : superLoader.getName();
+    }
     /**
      * Gets the parameters for a newly created classloader.
      *
@@ -402,7 +830,8 @@ public class ClassloaderTask extends ClassloaderBase implements
             parentLoader = new LoaderRef(getProject(),"CORE");
             return null;
         }
-        return parentLoader.getClassLoaderOrFallback(null, isFailOnError(), false);
+        return getCreated(parentLoader.getClassLoaderOrFallback(null,
+                isFailOnError(), false));
     }
     /**
      * Gets the super classloader to create a new classloader with.
@@ -413,7 +842,8 @@ public class ClassloaderTask extends ClassloaderBase implements
         if (superLoader == null) {
             return getClass().getClassLoader();
         }
-        return superLoader.getClassLoaderOrFallback(null, isFailOnError(), false);
+        return getCreated(superLoader.getClassLoaderOrFallback(null,
+                isFailOnError(), false));
     }
     /**
      * Handles a classpath entry.
@@ -480,6 +910,36 @@ public class ClassloaderTask extends ClassloaderBase implements
         handler.check();
         this.handler = handler;
     }
+    /**
+     * Sets the jmx attribute.
+     *
+     * @param onOff
+     *            <code>true</code> to register the classloader as MBean
+     *            of the platform MBeanServer.
+     */
+    public void setJmx(boolean onOff) {
+        this.jmx = onOff;
+    }
+    /**
+     * Sets the lazy attribute.
+     *
+     * @param onOff
+     *            <code>true</code> to defer the creation of the classloader
+     *            until it loads its first class or resource.
+     */
+    public void setLazy(boolean onOff) {
+        this.lazy = onOff;
+    }
+    /**
+     * Sets the prefetch attribute.
+     *
+     * @param onOff
+     *            <code>true</code> to resolve the classpath in a
+     *            background thread. Requires lazy.
+     */
+    public void setPrefetch(boolean onOff) {
+        this.prefetch = onOff;
+    }
     /**
      * Sets the loader attribute.
      *
@@ -530,6 +990,16 @@ public class ClassloaderTask extends ClassloaderBase implements
     public void setReset(boolean onOff) {
         this.reset = onOff;
     }
+    /**
+     * Sets the scope attribute.
+     *
+     * @param scope
+     *            <code>target</code> to remove and close a newly created
+     *            classloader, when the current target finishes.
+     */
+    public void setScope(ClassloaderTask.Scope scope) {
+        this.scope = scope;
+    }
     /**
      * Sets the superLoader attribute.
      *
@@ -0,0 +1,246 @@
+/*
+ * Copyright  2005 The Apache Software Foundation
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.tools.ant.taskdefs;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.Project;
+import org.apache.tools.ant.Task;
+import org.apache.tools.ant.TaskContainer;
+import org.apache.tools.ant.UnknownElement;
+
+/**
+ * Executes nested classloader tasks, independent ones concurrently.
+ * <p>
+ * A classloader task depends on the nested tasks, that create or modify its
+ * parentLoader or superLoader, and on the preceding tasks for the same
+ * loader. All nested tasks are configured before the first one is executed.
+ * After the first failure, no further task is started; the failures of the
+ * tasks already running are reported together.
+ * </p>
+ * @since Ant 1.7
+ */
+public class ClassloadersTask extends Task implements TaskContainer {
+    private final ArrayList tasks = new ArrayList();
+    private int threads = Runtime.getRuntime().availableProcessors();
+    /**
+     * Default constructor.
+     */
+    public ClassloadersTask() {
+    }
+    /**
+     * Adds a nested classloader task.
+     * @param task The task.
+     */
+    public void addTask(Task task) {
+        tasks.add(task);
+    }
+    /**
+     * Executes the nested tasks.
+     */
+    public void execute() {
+        if (threads < 1) {
+            throw new BuildException("threads must be at least 1",
+                    getLocation());
+        }
+        int n = tasks.size();
+        if (n == 0) {
+            return;
+        }
+        ClassloaderTask[] defs = new ClassloaderTask[n];
+        for (int i = 0; i < n; i++) {
+            defs[i] = getDefinition((Task) tasks.get(i));
+        }
+        ArrayList[] dependents = new ArrayList[n];
+        int[] pending = new int[n];
+        for (int i = 0; i < n; i++) {
+            dependents[i] = new ArrayList();
+        }
+        for (int i = 0; i < n; i++) {
+            String parent = defs[i].getParentLoaderName();
+            String superLoader = defs[i].getSuperLoaderName();
+            for (int j = 0; j < n; j++) {
+                String name = defs[j].getLoaderName();
+                boolean sameLoader = (j < i)
+                        && name.equals(defs[i].getLoaderName());
+                boolean usedLoader = (j != i)
+                        && (name.equals(parent) || name.equals(superLoader));
+                if (sameLoader || usedLoader) {
+                    dependents[j].add(Integer.valueOf(i));
+                    pending[i]++;
+                }
+            }
+        }
+        checkCycles(defs, dependents, pending.clone());
+        run(defs, dependents, pending);
+    }
+    /**
+     * Checks, that all nested tasks can be ordered.
+     * @param defs The nested tasks.
+     * @param dependents The dependent tasks per task.
+     * @param pending The number of dependencies per task; modified.
+     */
+    private void checkCycles(ClassloaderTask[] defs, ArrayList[] dependents,
+            int[] pending) {
+        LinkedList ready = new LinkedList();
+        for (int i = 0; i < pending.length; i++) {
+            if (pending[i] == 0) {
+                ready.add(Integer.valueOf(i));
+            }
+        }
+        int ordered = 0;
+        while (!ready.isEmpty()) {
+            int i = ((Integer) ready.removeFirst()).intValue();
+            ordered++;
+            for (int k = 0; k < dependents[i].size(); k++) {
+                int d = ((Integer) dependents[i].get(k)).intValue();
+                if (--pending[d] == 0) {
+                    ready.add(Integer.valueOf(d));
+                }
+            }
+        }
+        if (ordered == pending.length) {
+            return;
+        }
+        StringBuffer sb = new StringBuffer("cyclic dependency between "
+                + "classloaders:");
+        for (int i = 0; i < pending.length; i++) {
+            if (pending[i] > 0) {
+                sb.append(' ').append(defs[i].getLoaderName());
+            }
+        }
+        throw new BuildException(sb.toString(), getLocation());
+    }
+    private ClassloaderTask getDefinition(Task task) {
+        // configure in this thread, configuration is not thread safe.
+        task.maybeConfigure();
+        Object real = task;
+        if (task instanceof UnknownElement) {
+            real = ((UnknownElement) task).getRealThing();
+        }
+        if (!(real instanceof ClassloaderTask)) {
+            throw new BuildException("nested task " + task.getTaskName()
+                    + " is not supported, only classloader tasks are",
+                    task.getLocation());
+        }
+        return (ClassloaderTask) real;
+    }
+    private void run(ClassloaderTask[] defs, ArrayList[] dependents,
+            int[] pending) {
+        final int n = defs.length;
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(
+                threads, n), new ThreadFactory() {
+            private int count = 0;
+            public synchronized Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "classloaders worker " + (++count));
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        CompletionService done = new ExecutorCompletionService(pool);
+        LinkedList ready = new LinkedList();
+        for (int i = 0; i < n; i++) {
+            if (pending[i] == 0) {
+                ready.add(Integer.valueOf(i));
+            }
+        }
+        ArrayList failures = new ArrayList();
+        Throwable firstFailure = null;
+        int running = 0;
+        int executed = 0;
+        try {
+            while (true) {
+                while (failures.isEmpty() && !ready.isEmpty()) {
+                    final int i = ((Integer) ready.removeFirst()).intValue();
+                    final Task task = (Task) tasks.get(i);
+                    done.submit(new Callable() {
+                        public Object call() {
+                            try {
+                                task.perform();
+                                return new Object[] {Integer.valueOf(i), null};
+                            } catch (Throwable t) {
+                                return new Object[] {Integer.valueOf(i), t};
+                            }
+                        }
+                    });
+                    running++;
+                }
+                if (running == 0) {
+                    break;
+                }
+                Object[] result = (Object[]) done.take().get();
+                running--;
+                executed++;
+                int i = ((Integer) result[0]).intValue();
+                Throwable t = (Throwable) result[1];
+                if (t != null) {
+                    if (firstFailure == null) {
+                        firstFailure = t;
+                    }
+                    failures.add(defs[i].getLoaderName() + ": "
+                            + t.getMessage());
+                    continue;
+                }
+                for (int k = 0; k < dependents[i].size(); k++) {
+                    int d = ((Integer) dependents[i].get(k)).intValue();
+                    if (--pending[d] == 0) {
+                        ready.add(Integer.valueOf(d));
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new BuildException("interrupted", e, getLocation());
+        } catch (ExecutionException e) {
+            // the callable catches everything.
+            throw new BuildException(e.getCause(), getLocation());
+        } finally {
+            pool.shutdown();
+        }
+        if (failures.isEmpty()) {
+            log(executed + " classloader tasks executed with up to "
+                    + Math.min(threads, n) + " threads", Project.MSG_VERBOSE);
+            return;
+        }
+        StringBuffer sb = new StringBuffer();
+        sb.append(failures.size()).append(" of ").append(n)
+                .append(" classloader tasks failed, ").append(n - executed)
+                .append(" not executed:");
+        for (int i = 0; i < failures.size(); i++) {
+            sb.append("\n  ").append(failures.get(i));
+        }
+        throw new BuildException(sb.toString(), firstFailure, getLocation());
+    }
+    /**
+     * Sets the maximum number of classloader tasks executed concurrently.
+     * @param threads The number of threads; defaults to the number of
+     *     available processors.
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+}
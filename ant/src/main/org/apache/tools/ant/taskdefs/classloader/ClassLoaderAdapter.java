@@ -54,6 +54,18 @@ public interface ClassLoaderAdapter {
      */
     boolean appendClasspath(ClassloaderContext.CreateModify task,
             ClassLoader classloader);
+    /**
+     * Closes a classloader instance, that is no longer used, releasing
+     * its resources like open jar files.
+     *
+     * @param task
+     *            the calling ClassloaderBase-task.
+     * @param classloader
+     *            the classloader instance to close.
+     * @return true if executed successful, false on error
+     */
+    boolean closeClassLoader(ClassloaderContext.CreateModify task,
+            ClassLoader classloader);
     /**
      * Creates a classloader instance.
      *
@@ -131,4 +143,19 @@ public interface ClassLoaderAdapter {
      */
     void report(ClassloaderReporter to, ClassloaderContext.Report task,
             ClassLoader classloader, ClassloaderReportHandle name);
+    /**
+     * reports the estimated memory footprint of a classloader instance.
+     *
+     * @param to
+     *            the Reporter Object to report to.
+     * @param task
+     *            the calling ClassloaderBase-task.
+     * @param classloader
+     *            the classloader instance to report about.
+     * @param name
+     *            the name of the classloader instance.
+     */
+    void reportFootprint(ClassloaderReporter to,
+            ClassloaderContext.Report task, ClassLoader classloader,
+            ClassloaderReportHandle name);
 }
\ No newline at end of file
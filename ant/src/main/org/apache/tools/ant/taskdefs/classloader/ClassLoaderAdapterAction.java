@@ -21,6 +21,7 @@ package org.apache.tools.ant.taskdefs.classloader;
  */
 public final class ClassLoaderAdapterAction {
     private static final int IDAPPEND = 2;
+    private static final int IDCLOSE = 5;
     private static final int IDCREATE = 1;
     private static final int IDGETPATH = 3;
     private static final int IDREPORT = 4;
@@ -28,23 +29,38 @@ public final class ClassLoaderAdapterAction {
      * Append Path to an existing ClassLoader instance.
      */
     public static final ClassLoaderAdapterAction APPEND = new ClassLoaderAdapterAction(
-            IDAPPEND);
+            IDAPPEND, "append");
+    /**
+     * Close a ClassLoader instance, that is no longer used.
+     */
+    public static final ClassLoaderAdapterAction CLOSE = new ClassLoaderAdapterAction(
+            IDCLOSE, "close");
     /**
      * Create a new ClassLoader instance.
      */
     public static final ClassLoaderAdapterAction CREATE = new ClassLoaderAdapterAction(
-            IDCREATE);
+            IDCREATE, "create");
     /**
      * Get the path of an existing ClassLoader instance.
      */
     public static final ClassLoaderAdapterAction GETPATH = new ClassLoaderAdapterAction(
-            IDGETPATH);
+            IDGETPATH, "getpath");
     /**
      * Get additional Report information.
      */
     public static final ClassLoaderAdapterAction REPORT = new ClassLoaderAdapterAction(
-            IDREPORT);
+            IDREPORT, "report");
+
+    private final String name;
 
-    private ClassLoaderAdapterAction(int value) {
+    private ClassLoaderAdapterAction(int value, String name) {
+        this.name = name;
+    }
+    /**
+     * Gets the name of this action.
+     * @return The name.
+     */
+    public String toString() {
+        return name;
     }
 }
\ No newline at end of file
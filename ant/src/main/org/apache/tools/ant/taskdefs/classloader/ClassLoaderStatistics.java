@@ -0,0 +1,165 @@
+/*
+ * Copyright  2005 The Apache Software Foundation
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.tools.ant.taskdefs.classloader;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.tools.ant.taskdefs.classloader.report.ClassloaderReporter;
+
+/**
+ * Counters about the classes loaded by a single classloader.
+ * The counters are striped, so concurrent class loading does not contend
+ * on them.
+ * @since Ant 1.7
+ */
+public class ClassLoaderStatistics {
+    /**
+     * Implemented by classloaders, that keep statistics.
+     */
+    public static interface Source {
+        /**
+         * Gets the statistics of this classloader.
+         * @return The statistics.
+         */
+        ClassLoaderStatistics getStatistics();
+    }
+    private final LongAdder classCacheHits = new LongAdder();
+    private final LongAdder classCacheMisses = new LongAdder();
+    private final LongAdder definedBytes = new LongAdder();
+    private final LongAdder definedClasses = new LongAdder();
+    private final LongAdder findClassHits = new LongAdder();
+    private final LongAdder findClassMisses = new LongAdder();
+    private final LongAdder findClassNanos = new LongAdder();
+    private volatile long lastUse = 0;
+    /**
+     * Default constructor.
+     */
+    public ClassLoaderStatistics() {
+    }
+    /**
+     * Counts a lookup in the class bytes cache.
+     * @param hit True, if the bytes were found in the cache.
+     */
+    public void classCacheLookup(boolean hit) {
+        if (hit) {
+            classCacheHits.increment();
+        } else {
+            classCacheMisses.increment();
+        }
+    }
+    /**
+     * Counts a defined class.
+     * @param bytes The size of the class' bytecode or -1 if unknown.
+     */
+    public void classDefined(long bytes) {
+        definedClasses.increment();
+        if (bytes > 0) {
+            definedBytes.add(bytes);
+        }
+    }
+    /**
+     * Counts a call of findClass.
+     * @param nanos The time spent in findClass, including defineClass.
+     * @param found True, if the class was found.
+     */
+    public void findClass(long nanos, boolean found) {
+        findClassNanos.add(nanos);
+        if (found) {
+            findClassHits.increment();
+        } else {
+            findClassMisses.increment();
+        }
+        lastUse = System.currentTimeMillis();
+    }
+    /**
+     * Gets the number of class bytes found in the class bytes cache.
+     * @return The number of hits.
+     */
+    public long getClassCacheHits() {
+        return classCacheHits.sum();
+    }
+    /**
+     * Gets the number of class bytes not found in the class bytes cache.
+     * @return The number of misses.
+     */
+    public long getClassCacheMisses() {
+        return classCacheMisses.sum();
+    }
+    /**
+     * Gets the total size of the defined classes' bytecode.
+     * @return The size in bytes.
+     */
+    public long getDefinedBytes() {
+        return definedBytes.sum();
+    }
+    /**
+     * Gets the number of defined classes.
+     * @return The number of classes.
+     */
+    public long getDefinedClasses() {
+        return definedClasses.sum();
+    }
+    /**
+     * Gets the number of findClass calls, that found a class.
+     * @return The number of hits.
+     */
+    public long getFindClassHits() {
+        return findClassHits.sum();
+    }
+    /**
+     * Gets the number of findClass calls, that did not find a class.
+     * @return The number of misses.
+     */
+    public long getFindClassMisses() {
+        return findClassMisses.sum();
+    }
+    /**
+     * Gets the total time spent in findClass.
+     * @return The time in nanoseconds.
+     */
+    public long getFindClassNanos() {
+        return findClassNanos.sum();
+    }
+    /**
+     * Gets the time of the last findClass call.
+     * @return The time in milliseconds since 1970 or 0 if
+     *   findClass was never called.
+     */
+    public long getLastUse() {
+        return lastUse;
+    }
+    /**
+     * Reports the counters as attributes.
+     * @param to The reporter to report to.
+     */
+    public void report(ClassloaderReporter to) {
+        to.reportAttribute("definedClasses", String.valueOf(
+                getDefinedClasses()));
+        to.reportAttribute("definedBytes", String.valueOf(getDefinedBytes()));
+        to.reportAttribute("findClassTime", String.valueOf(
+                getFindClassNanos() / 1000000L) + "ms");
+        to.reportAttribute("findClassMisses", String.valueOf(
+                getFindClassMisses()));
+        long hits = getClassCacheHits();
+        long lookups = hits + getClassCacheMisses();
+        if (lookups > 0) {
+            to.reportAttribute("classCacheHits", String.valueOf(hits));
+            to.reportAttribute("classCacheHitRate", String.valueOf(
+                    hits * 100 / lookups) + "%");
+        }
+    }
+}
@@ -20,6 +20,41 @@ package org.apache.tools.ant.taskdefs.classloader;
  * @since Ant1.7
  */
 public interface ClassloaderContext {
+    /**
+     * Timing phase: resolving the classpath to create/append.
+     */
+    String TIMING_RESOLVE = "resolve";
+    /**
+     * Timing phase: checking for duplicate classpath entries.
+     */
+    String TIMING_DEDUP = "dedup";
+    /**
+     * Timing phase: looking up the adapter of a classloader.
+     */
+    String TIMING_DISPATCH = "dispatch";
+    /**
+     * Timing phase: creating a classloader, including the resolution
+     * of its classpath.
+     */
+    String TIMING_CREATE = "create";
+    /**
+     * Timing phase: appending a classpath, including resolution and
+     * duplicate checks.
+     */
+    String TIMING_APPEND = "append";
+    /**
+     * Timing phase: collecting the data of a report.
+     */
+    String TIMING_COLLECT = "collect";
+    /**
+     * Timing phase: writing a report.
+     */
+    String TIMING_WRITE = "write";
+    /**
+     * Timing phase: waiting for another task modifying the same
+     * classloader.
+     */
+    String TIMING_LOCK_WAIT = "lockwait";
     /**
      * Context for Classloader-related create/modify action.
      * @since Ant1.7
@@ -82,6 +117,20 @@ public interface ClassloaderContext {
          *   false otherwise.
          */
         boolean isReportPackages();
+        /**
+         * Indicates whether the estimated memory footprint should be
+         * reported.
+         * @return True, if the footprint should be reported;
+         *   false otherwise.
+         */
+        boolean isReportFootprint();
+        /**
+         * Gets the number of threads used to collect the data of the
+         * classloaders.
+         * @return The number of threads; values less than 2 indicate, that
+         *   the data is collected by the calling thread.
+         */
+        int getThreads();
     }
     /**
      * Gets the handlerset.
@@ -103,6 +152,34 @@ public interface ClassloaderContext {
      * @param msg The message.
      */
     void handleDebug(String msg);
+    /**
+     * Handles a parameterized debug message. The message is only
+     * formatted, if debug messages are enabled.
+     * @param pattern The message pattern as used by MessageFormat.
+     * @param arg The argument for <code>{0}</code>.
+     */
+    void handleDebug(String pattern, Object arg);
+    /**
+     * Handles a parameterized debug message. The message is only
+     * formatted, if debug messages are enabled.
+     * @param pattern The message pattern as used by MessageFormat.
+     * @param arg0 The argument for <code>{0}</code>.
+     * @param arg1 The argument for <code>{1}</code>.
+     */
+    void handleDebug(String pattern, Object arg0, Object arg1);
+    /**
+     * Indicates whether debug messages are shown by anybody. Callers
+     * may use this to skip building expensive messages.
+     * @return True, if debug messages may be shown.
+     */
+    boolean isDebugEnabled();
+    /**
+     * Handles the time spent in a phase. May be called several times
+     * per phase and by several threads.
+     * @param phase The phase, f.e. TIMING_DEDUP.
+     * @param nanos The time spent in nanoseconds.
+     */
+    void handleTiming(String phase, long nanos);
     /**
      * Handles an error message.
      * @param msg The message.
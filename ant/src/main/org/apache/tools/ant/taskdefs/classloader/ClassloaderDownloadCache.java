@@ -0,0 +1,289 @@
+/*
+ * Copyright  2005 The Apache Software Foundation
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.tools.ant.taskdefs.classloader;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A local cache of remote (<code>http:</code> and <code>https:</code>)
+ * classpath entries. A remote entry is downloaded once into a content
+ * addressed file of the cache directory, and the local file is used in its
+ * place. Entries downloaded before are validated with a conditional request
+ * (<code>If-None-Match</code>, <code>If-Modified-Since</code>) the first
+ * time an instance of the cache resolves them; if the server can't be
+ * reached, the downloaded file is used. Several entries are downloaded in
+ * parallel.
+ * @since Ant 1.7
+ */
+public final class ClassloaderDownloadCache {
+    private static final int MAX_THREADS = 8;
+    private static final int TIMEOUT = 30000;
+    private final File dir;
+    // maps a remote entry to the URL of its validated local file.
+    private final HashMap validated = new HashMap();
+    /**
+     * Constructor.
+     * @param dir The cache directory.
+     */
+    public ClassloaderDownloadCache(File dir) {
+        this.dir = dir;
+    }
+    private static String digest(byte[] data) {
+        MessageDigest md = newDigest();
+        md.update(data);
+        return toHex(md);
+    }
+    /**
+     * Downloads or validates a remote entry.
+     * @param url The remote entry.
+     * @return The local file.
+     * @throws IOException if the entry can't be downloaded and has not been
+     *     downloaded before.
+     */
+    private File fetch(URL url) throws IOException {
+        File meta = new File(dir, digest(url.toString().getBytes("UTF-8"))
+                + ".properties");
+        Properties props = new Properties();
+        if (meta.isFile()) {
+            InputStream in = new FileInputStream(meta);
+            try {
+                props.load(in);
+            } finally {
+                in.close();
+            }
+        }
+        String content = props.getProperty("content");
+        File cached = (content == null) ? null : new File(dir, content);
+        if ((cached != null) && !cached.isFile()) {
+            cached = null;
+        }
+        HttpURLConnection con = (HttpURLConnection) url.openConnection();
+        con.setConnectTimeout(TIMEOUT);
+        con.setReadTimeout(TIMEOUT);
+        con.setUseCaches(false);
+        if (cached != null) {
+            String etag = props.getProperty("etag");
+            if (etag != null) {
+                con.setRequestProperty("If-None-Match", etag);
+            }
+            String modified = props.getProperty("lastModified");
+            if (modified != null) {
+                con.setIfModifiedSince(Long.parseLong(modified));
+            }
+        }
+        try {
+            int code;
+            try {
+                code = con.getResponseCode();
+            } catch (IOException e) {
+                if (cached != null) {
+                    // offline: use the downloaded file.
+                    return cached;
+                }
+                throw e;
+            }
+            if ((code == HttpURLConnection.HTTP_NOT_MODIFIED)
+                    && (cached != null)) {
+                return cached;
+            }
+            if (code != HttpURLConnection.HTTP_OK) {
+                if ((cached != null)
+                        && (code >= HttpURLConnection.HTTP_INTERNAL_ERROR)) {
+                    return cached;
+                }
+                throw new IOException("HTTP " + code + " "
+                        + con.getResponseMessage());
+            }
+            File result = store(con);
+            props.setProperty("url", url.toString());
+            props.setProperty("content", result.getName());
+            props.remove("etag");
+            props.remove("lastModified");
+            if (con.getHeaderField("ETag") != null) {
+                props.setProperty("etag", con.getHeaderField("ETag"));
+            }
+            if (con.getLastModified() != 0) {
+                props.setProperty("lastModified", String.valueOf(
+                        con.getLastModified()));
+            }
+            File tmp = File.createTempFile("download", ".tmp", dir);
+            OutputStream out = new FileOutputStream(tmp);
+            try {
+                props.store(out, null);
+            } finally {
+                out.close();
+            }
+            meta.delete();
+            if (!tmp.renameTo(meta)) {
+                tmp.delete();
+            }
+            return result;
+        } finally {
+            con.disconnect();
+        }
+    }
+    /**
+     * Gets the cache directory.
+     * @return The cache directory.
+     */
+    public File getDirectory() {
+        return dir;
+    }
+    private static boolean isRemote(String entry) {
+        return (entry.startsWith("http:") || entry.startsWith("https:"))
+                && !entry.endsWith("/");
+    }
+    /**
+     * Replaces the remote entries of a classpath by their local files,
+     * downloading them if necessary. An entry, that can't be downloaded,
+     * is kept and a warning is issued.
+     * @param task The calling task.
+     * @param entries The classpath entries as URLs.
+     * @return The classpath with local files for the remote entries.
+     */
+    public String[] localize(ClassloaderContext task, String[] entries) {
+        String[] result = (String[]) entries.clone();
+        ArrayList pending = new ArrayList();
+        synchronized (validated) {
+            for (int i = 0; i < result.length; i++) {
+                if (!isRemote(result[i])) {
+                    continue;
+                }
+                String local = (String) validated.get(result[i]);
+                if (local != null) {
+                    result[i] = local;
+                } else if (!pending.contains(result[i])) {
+                    pending.add(result[i]);
+                }
+            }
+        }
+        if (pending.isEmpty()) {
+            return result;
+        }
+        dir.mkdirs();
+        if (!dir.isDirectory()) {
+            task.handleWarning("download cache " + dir
+                    + " is no directory, using remote entries");
+            return result;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(
+                pending.size(), MAX_THREADS));
+        try {
+            Future[] downloads = new Future[pending.size()];
+            for (int i = 0; i < downloads.length; i++) {
+                final String entry = (String) pending.get(i);
+                downloads[i] = pool.submit(new Callable() {
+                    public Object call() throws IOException {
+                        return fetch(new URL(entry)).toURI().toURL()
+                                .toString();
+                    }
+                });
+            }
+            for (int i = 0; i < downloads.length; i++) {
+                String entry = (String) pending.get(i);
+                try {
+                    String local = (String) downloads[i].get();
+                    task.handleDebug("downloaded {0} to {1}", entry, local);
+                    synchronized (validated) {
+                        validated.put(entry, local);
+                    }
+                    for (int j = 0; j < result.length; j++) {
+                        if (entry.equals(result[j])) {
+                            result[j] = local;
+                        }
+                    }
+                } catch (ExecutionException e) {
+                    task.handleWarning("unable to download " + entry + ": "
+                            + e.getCause() + ", using the remote entry");
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    task.handleWarning("download of " + entry
+                            + " interrupted, using the remote entry");
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return result;
+    }
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // required of every JVM.
+            throw new IllegalStateException(e.toString());
+        }
+    }
+    /**
+     * Stores the response body in a file named by the digest of its
+     * content.
+     * @param con The connection.
+     * @return The file.
+     * @throws IOException if the body can't be read or stored.
+     */
+    private File store(HttpURLConnection con) throws IOException {
+        MessageDigest md = newDigest();
+        File tmp = File.createTempFile("download", ".tmp", dir);
+        try {
+            InputStream in = con.getInputStream();
+            try {
+                OutputStream out = new FileOutputStream(tmp);
+                try {
+                    byte[] buffer = new byte[8192];
+                    for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+                        md.update(buffer, 0, n);
+                        out.write(buffer, 0, n);
+                    }
+                } finally {
+                    out.close();
+                }
+            } finally {
+                in.close();
+            }
+            File result = new File(dir, toHex(md) + ".jar");
+            // same content, same file: keep the one downloaded before.
+            if (!result.isFile() && !tmp.renameTo(result)) {
+                throw new IOException("unable to rename " + tmp + " to "
+                        + result);
+            }
+            return result;
+        } finally {
+            tmp.delete();
+        }
+    }
+    private static String toHex(MessageDigest md) {
+        return new BigInteger(1, md.digest()).toString(16);
+    }
+}
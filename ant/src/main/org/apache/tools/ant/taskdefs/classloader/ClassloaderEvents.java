@@ -0,0 +1,101 @@
+/*
+ * Copyright  2005 The Apache Software Foundation
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.tools.ant.taskdefs.classloader;
+
+/**
+ * Emits timed events for the operations of the classloader tasks.
+ * If the JVM provides the flight recorder, the events are recorded as
+ * flight recorder events; otherwise all methods do nothing.
+ * <p>
+ * Usage:
+ * <pre>
+ * Object ev = ClassloaderEvents.getEvents().begin(ClassloaderEvents.CREATE);
+ * ... // the operation
+ * if (ev != null) {
+ *     ClassloaderEvents.getEvents().commit(ev, name, detail, count);
+ * }
+ * </pre>
+ * <code>begin</code> returns null if the event is not recorded, so the
+ * arguments of <code>commit</code> need not to be computed in this case.
+ * </p>
+ * @since Ant 1.7
+ */
+public class ClassloaderEvents {
+    /**
+     * A classloader is created.
+     */
+    public static final int CREATE = 0;
+    /**
+     * A classpath is appended to a classloader.
+     */
+    public static final int APPEND = 1;
+    /**
+     * A classloader hierarchy is checked for a duplicate entry.
+     */
+    public static final int DUPLICATE_CHECK = 2;
+    /**
+     * An adapter is looked up for a classloader.
+     */
+    public static final int ADAPTER_DISPATCH = 3;
+    /**
+     * A classloader or the whole hierarchy is reported.
+     */
+    public static final int REPORT = 4;
+    private static final String JFR_EVENTS =
+        "org.apache.tools.ant.taskdefs.classloader.jfr.JfrClassloaderEvents";
+    private static final ClassloaderEvents SINGLETON = newEvents();
+    /**
+     * Constructor for derived classes.
+     */
+    protected ClassloaderEvents() {
+    }
+    /**
+     * Gets the singleton instance.
+     * @return The events.
+     */
+    public static ClassloaderEvents getEvents() {
+        return SINGLETON;
+    }
+    private static ClassloaderEvents newEvents() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return (ClassloaderEvents) Class.forName(JFR_EVENTS)
+                    .newInstance();
+        } catch (Exception e) {
+            return new ClassloaderEvents();
+        } catch (LinkageError e) {
+            return new ClassloaderEvents();
+        }
+    }
+    /**
+     * Starts timing an event.
+     * @param type The event type, one of the constants of this class.
+     * @return The started event or null if the event is not recorded.
+     */
+    public Object begin(int type) {
+        return null;
+    }
+    /**
+     * Ends and records an event.
+     * @param event The event as returned by begin; null is ignored.
+     * @param name The name of the classloader or of the report phase.
+     * @param detail Additional information, f.e. the adapter or the entry.
+     * @param count Number of affected elements, f.e. classpath entries.
+     */
+    public void commit(Object event, String name, String detail, int count) {
+    }
+}
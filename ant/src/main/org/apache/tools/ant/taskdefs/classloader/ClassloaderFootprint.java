@@ -0,0 +1,81 @@
+/*
+ * Copyright  2005 The Apache Software Foundation
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.tools.ant.taskdefs.classloader;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.util.Iterator;
+
+import org.apache.tools.ant.taskdefs.classloader.report.ClassloaderReporter;
+
+/**
+ * Estimates the memory footprint of a classloader. The Metaspace share of
+ * a classloader is estimated as its part of all loaded classes; the
+ * Metaspace usage is read from the memory pools of the JVM. The Metaspace
+ * pool is not split by classloader, so the growth since the creation of a
+ * classloader is the one of the whole JVM.
+ * @since Ant 1.7
+ */
+public final class ClassloaderFootprint {
+    private static final String METASPACE = "Metaspace";
+    private ClassloaderFootprint() {
+    }
+    /**
+     * Gets the used Metaspace.
+     * @return The used bytes or -1 if the JVM has no Metaspace pool.
+     */
+    public static long getMetaspaceUsed() {
+        for (Iterator i = ManagementFactory.getMemoryPoolMXBeans().iterator();
+                i.hasNext();) {
+            MemoryPoolMXBean pool = (MemoryPoolMXBean) i.next();
+            if (METASPACE.equals(pool.getName()) && pool.isValid()) {
+                return pool.getUsage().getUsed();
+            }
+        }
+        return -1;
+    }
+    /**
+     * Reports the footprint common to all classloaders: the estimated
+     * Metaspace share and the growth of the JVM's Metaspace since the
+     * classloader was created by the classloader task, which includes the
+     * classes of all other classloaders. Nothing is reported, if the number
+     * of classes defined by the classloader is unknown.
+     * @param to The reporter to report to.
+     * @param cl The classloader.
+     */
+    public static void report(ClassloaderReporter to, ClassLoader cl) {
+        long classes = ClassloaderTracker.getDefinedClasses(cl);
+        if (classes < 0) {
+            return;
+        }
+        long used = getMetaspaceUsed();
+        if (used < 0) {
+            return;
+        }
+        long loaded = ManagementFactory.getClassLoadingMXBean()
+                .getLoadedClassCount();
+        if (loaded > 0) {
+            to.reportAttribute("metaspaceShare", String.valueOf(used
+                    * classes / loaded));
+        }
+        long atCreation = ClassloaderTracker.getMetaspaceAtCreation(cl);
+        if (atCreation >= 0) {
+            to.reportAttribute("jvmMetaspaceSinceCreation", String.valueOf(
+                    used - atCreation));
+        }
+    }
+}
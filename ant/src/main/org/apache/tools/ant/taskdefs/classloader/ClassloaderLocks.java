@@ -0,0 +1,71 @@
+/*
+ * Copyright  2005 The Apache Software Foundation
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.tools.ant.taskdefs.classloader;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Striped locks, that serialize tasks creating or modifying the same
+ * classloader. A task first locks the name of the loader, then - to append -
+ * the classloader itself; locks are always taken in this order.
+ * The time spent waiting for a lock is reported to the context as
+ * TIMING_LOCK_WAIT.
+ * @since Ant 1.7
+ */
+public final class ClassloaderLocks {
+    private static final int STRIPES = 64;
+    private static final ReentrantLock[] BY_LOADER = newLocks();
+    private static final ReentrantLock[] BY_NAME = newLocks();
+    private ClassloaderLocks() {
+    }
+    private static ReentrantLock[] newLocks() {
+        ReentrantLock[] result = new ReentrantLock[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            result[i] = new ReentrantLock();
+        }
+        return result;
+    }
+    private static Lock lock(ClassloaderContext ctx, ReentrantLock l) {
+        if (!l.tryLock()) {
+            long start = System.nanoTime();
+            l.lock();
+            ctx.handleTiming(ClassloaderContext.TIMING_LOCK_WAIT,
+                    System.nanoTime() - start);
+        }
+        return l;
+    }
+    /**
+     * Locks a classloader.
+     * @param ctx The context to report the waiting time to.
+     * @param cl The classloader.
+     * @return The lock to unlock afterwards.
+     */
+    public static Lock lockLoader(ClassloaderContext ctx, ClassLoader cl) {
+        return lock(ctx, BY_LOADER[(System.identityHashCode(cl) & 0x7fffffff)
+                % STRIPES]);
+    }
+    /**
+     * Locks the name of a classloader.
+     * @param ctx The context to report the waiting time to.
+     * @param name The name of the classloader.
+     * @return The lock to unlock afterwards.
+     */
+    public static Lock lockName(ClassloaderContext ctx, String name) {
+        return lock(ctx, BY_NAME[(name.hashCode() & 0x7fffffff) % STRIPES]);
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright  2005 The Apache Software Foundation
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.tools.ant.taskdefs.classloader;
+
+import java.lang.instrument.Instrumentation;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+
+import org.apache.tools.ant.taskdefs.classloader.loader.ClassloaderAgent;
+
+/**
+ * Tracks the classloaders created by the classloader task with phantom
+ * references, to detect classloaders, that have been reset or disposed but
+ * are never garbage collected. Such a leaked classloader keeps all of its
+ * classes in the Metaspace.
+ * @since Ant 1.7
+ */
+public final class ClassloaderTracker {
+    /**
+     * A classloader, that has been released but is still reachable.
+     */
+    public static final class Leak {
+        private final long definedClasses;
+        private final String loaderClass;
+        private final String name;
+        private final long released;
+        private Leak(String name, String loaderClass, long released,
+                long definedClasses) {
+            this.name = name;
+            this.loaderClass = loaderClass;
+            this.released = released;
+            this.definedClasses = definedClasses;
+        }
+        /**
+         * Gets the number of classes defined by the classloader.
+         * @return The number of classes or -1 if unknown.
+         */
+        public long getDefinedClasses() {
+            return definedClasses;
+        }
+        /**
+         * Gets the classname of the classloader.
+         * @return The classname.
+         */
+        public String getLoaderClass() {
+            return loaderClass;
+        }
+        /**
+         * Gets the name of the classloader.
+         * @return The name.
+         */
+        public String getName() {
+            return name;
+        }
+        /**
+         * Gets the time the classloader was released.
+         * @return The time in milliseconds since 1970.
+         */
+        public long getReleased() {
+            return released;
+        }
+    }
+    private static final class Tracked extends PhantomReference {
+        private final WeakReference loader;
+        private final String loaderClass;
+        private final long metaspace;
+        private final String name;
+        private volatile long released = 0;
+        private Tracked(String name, ClassLoader cl) {
+            super(cl, QUEUE);
+            this.name = name;
+            this.metaspace = ClassloaderFootprint.getMetaspaceUsed();
+            this.loaderClass = cl.getClass().getName();
+            this.loader = new WeakReference(cl);
+        }
+    }
+    private static final Comparator BY_RELEASE = new Comparator() {
+        public int compare(Object o1, Object o2) {
+            long r1 = ((Tracked) o1).released;
+            long r2 = ((Tracked) o2).released;
+            return (r1 < r2) ? -1 : ((r1 == r2) ? 0 : 1);
+        }
+    };
+    private static final int GC_ROUNDS = 5;
+    private static final long GC_WAIT = 100;
+    private static final ReferenceQueue QUEUE = new ReferenceQueue();
+    // keeps the phantom references reachable until they are enqueued.
+    private static final HashSet TRACKED = new HashSet();
+    private ClassloaderTracker() {
+    }
+    private static void expunge() {
+        for (Reference r = QUEUE.poll(); r != null; r = QUEUE.poll()) {
+            TRACKED.remove(r);
+        }
+    }
+    /**
+     * Gets the number of classes defined by a classloader.
+     * @param cl The classloader.
+     * @return The number of classes or -1 if unknown.
+     */
+    public static long getDefinedClasses(ClassLoader cl) {
+        if (cl instanceof ClassLoaderStatistics.Source) {
+            return ((ClassLoaderStatistics.Source) cl).getStatistics()
+                    .getDefinedClasses();
+        }
+        Instrumentation inst = ClassloaderAgent.getInstrumentation();
+        if (inst == null) {
+            return -1;
+        }
+        Class[] all = inst.getAllLoadedClasses();
+        long result = 0;
+        for (int i = 0; i < all.length; i++) {
+            if (all[i].getClassLoader() == cl) {
+                result++;
+            }
+        }
+        return result;
+    }
+    /**
+     * Gets the used Metaspace at the time a classloader was created.
+     * @param cl The classloader.
+     * @return The used bytes or -1 if unknown.
+     */
+    public static long getMetaspaceAtCreation(ClassLoader cl) {
+        synchronized (TRACKED) {
+            for (Iterator i = TRACKED.iterator(); i.hasNext();) {
+                Tracked t = (Tracked) i.next();
+                if (t.loader.get() == cl) {
+                    return t.metaspace;
+                }
+            }
+        }
+        return -1;
+    }
+    /**
+     * Gets the released classloaders, that are still reachable.
+     * @param gc True, to request garbage collections before, until all
+     *     released classloaders are collected or some rounds passed.
+     * @return The leaked classloaders in the order of their release.
+     */
+    public static Leak[] getLeaks(boolean gc) {
+        for (int round = 0; gc && (round < GC_ROUNDS); round++) {
+            synchronized (TRACKED) {
+                expunge();
+                if (getReleased().isEmpty()) {
+                    break;
+                }
+            }
+            System.gc();
+            try {
+                Thread.sleep(GC_WAIT);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        ArrayList result = new ArrayList();
+        synchronized (TRACKED) {
+            expunge();
+            ArrayList released = getReleased();
+            for (int i = 0; i < released.size(); i++) {
+                Tracked t = (Tracked) released.get(i);
+                ClassLoader cl = (ClassLoader) t.loader.get();
+                if (cl != null) {
+                    result.add(new Leak(t.name, t.loaderClass, t.released,
+                            getDefinedClasses(cl)));
+                }
+            }
+        }
+        return (Leak[]) result.toArray(new Leak[result.size()]);
+    }
+    private static ArrayList getReleased() {
+        ArrayList result = new ArrayList();
+        for (Iterator i = TRACKED.iterator(); i.hasNext();) {
+            Tracked t = (Tracked) i.next();
+            if (t.released != 0) {
+                result.add(t);
+            }
+        }
+        Collections.sort(result, BY_RELEASE);
+        return result;
+    }
+    /**
+     * Marks a classloader as released, i.e. it has been reset or disposed
+     * and is expected to be garbage collected.
+     * @param cl The classloader.
+     */
+    public static void released(ClassLoader cl) {
+        if (cl == null) {
+            return;
+        }
+        synchronized (TRACKED) {
+            expunge();
+            for (Iterator i = TRACKED.iterator(); i.hasNext();) {
+                Tracked t = (Tracked) i.next();
+                if ((t.loader.get() == cl) && (t.released == 0)) {
+                    t.released = System.currentTimeMillis();
+                }
+            }
+        }
+    }
+    /**
+     * Tracks a newly created classloader.
+     * @param name The name of the classloader.
+     * @param cl The classloader.
+     */
+    public static void track(String name, ClassLoader cl) {
+        synchronized (TRACKED) {
+            expunge();
+            TRACKED.add(new Tracked(name, cl));
+        }
+    }
+}
@@ -47,11 +47,70 @@ public final class SimpleClassloaderUtil implements ClassloaderUtil {
      */
     public boolean containsEntry(ClassloaderContext ctx,
             ClassLoader cl, String url) {
-        ArrayList errors = new ArrayList();
-        if (containsEntryDelegatedOrSelf(ctx, cl, url, errors)) {
+        Object ev = ClassloaderEvents.getEvents().begin(
+                ClassloaderEvents.DUPLICATE_CHECK);
+        long start = System.nanoTime();
+        // messages are only built for failing checks, the list only if
+        // there are any.
+        List errors = null;
+        boolean found = false;
+        ClassLoader current = cl;
+        // As of performance reasons, the check is not done in the
+        // loading order (parentloader - childloader).
+        while (!found) {
+            if (current == null) {
+                URL[] urls = ctx.getUtil().getBootstrapClasspathURLs();
+                if (urls == null) {
+                    errors = addError(errors,
+                            "bootstrap classpath not investigatable");
+                } else {
+                    found = contains(urls, url);
+                }
+                break;
+            }
+            try {
+                ClassLoaderAdapter adapter = findAdapter(ctx, current,
+                        ClassLoaderAdapterAction.GETPATH);
+                String[] cp = adapter.getClasspath(ctx, current, false);
+                if (cp == null) {
+                    errors = addError(errors, "path for classloader "
+                            + current.getClass().getName()
+                            + " not investigatable (adapter retrieves no path)");
+                } else {
+                    found = contains(cp, url);
+                }
+            } catch (ClassloaderAdapterException e) {
+                errors = addAdapterError(ctx, errors, e, "path for classloader "
+                        + current.getClass().getName(), "");
+            }
+            if (found) {
+                break;
+            }
+            ClassLoader parent = null;
+            try {
+                ClassLoaderAdapter adapter = findAdapter(ctx, current, null);
+                parent = adapter.getParent(current);
+                if (parent == null) {
+                    parent = adapter.getDefaultParent();
+                }
+            } catch (ClassloaderAdapterException e) {
+                errors = addAdapterError(ctx, errors, e,
+                        "  parent of classloader "
+                        + current.getClass().getName(), "");
+            }
+            current = parent;
+        }
+        ctx.handleTiming(ClassloaderContext.TIMING_DEDUP,
+                System.nanoTime() - start);
+        if (ev != null) {
+            ClassloaderEvents.getEvents().commit(ev,
+                    (cl == null) ? null : cl.getClass().getName(), url,
+                    found ? 1 : 0);
+        }
+        if (found) {
             return true;
         }
-        if (errors.size() > 0) {
+        if (errors != null) {
             StringBuffer sb = new StringBuffer(BUFFER_MULT * (1 + errors.size()));
             sb.append("Check for duplicate entries fails due to the following reason(s):");
             for (Iterator i = errors.iterator(); i.hasNext();) {
@@ -61,72 +120,47 @@ public final class SimpleClassloaderUtil implements ClassloaderUtil {
         }
         return false;
     }
-
-    /**
-     * Checks whether an url is in the classpath of a classloader or it's
-     * delegation hierarchy. <br>
-     * NOTE: As of performance reasons, this method does not do the check in the
-     * loading order (parentloader - childloader).
-     *
-     * @param cl The classloader.
-     * @param url The url.
-     * @param errors A list of errors to report.
-     * @return <code>true</code>, if the classloader or one of it's implicite
-     *         or explicite parents contains the url. <code>false</code>
-     *         otherwise.
-     */
-    private static boolean containsEntryDelegatedOrSelf(
-            ClassloaderContext ctx, ClassLoader cl, String url,
-            List errors) {
-        if (cl == null) {
-            URL[] urls = ctx.getUtil().getBootstrapClasspathURLs();
-            if (urls == null) {
-                errors.add("bootstrap classpath not investigatable");
-                return false;
-            }
-            for (int i = 0; i < urls.length; i++) {
-                if (urls[i].toString().equals(url)) {
-                    return true;
-                }
-            }
-            return false;
-        }
-        if (containsEntrySelf(ctx, cl, url, errors)) {
-            return true;
-        }
-        ClassLoaderAdapter adapter = ctx.getUtil().findAdapter(ctx, cl, null,
-                errors, "  parent of classloader "
-                        + cl.getClass().getModifiers(), "");
-        ClassLoader parent = null;
-        if (adapter != null) {
-            parent = adapter.getParent(cl);
-            if (parent == null) {
-                parent = adapter.getDefaultParent();
-            }
-        }
-        return containsEntryDelegatedOrSelf(ctx, parent, url, errors);
-    }
-    private static boolean containsEntrySelf(ClassloaderContext ctx,
-            ClassLoader cl, String url, List errors) {
-        ClassLoaderAdapter adapter = ctx.getUtil().findAdapter(ctx, cl,
-                ClassLoaderAdapterAction.GETPATH, errors,
-                "path for classloader " + cl.getClass().getName(), "");
-        if (adapter == null) {
-            return false;
-        }
-        String[] cp = adapter.getClasspath(ctx, cl, false);
-        if (cp == null) {
-            errors.add("path for classloader " + cl.getClass().getName()
-                    + " not investigatable (adapter retrieves no path)");
-            return false;
-        }
-        for (int i = 0; i < cp.length; i++) {
-            if (cp[i].equals(url)) {
+    private static boolean contains(Object[] entries, String url) {
+        for (int i = 0; i < entries.length; i++) {
+            if (entries[i].toString().equals(url)) {
                 return true;
             }
         }
         return false;
     }
+    private static List addError(List errors, String msg) {
+        List result = (errors == null) ? new ArrayList() : errors;
+        result.add(msg);
+        return result;
+    }
+    /**
+     * Adds the message for a failed adapter lookup.
+     * @param ctx The context.
+     * @param errors The list to add to or null to create a new list.
+     * @param e The reason.
+     * @param errPrefix A prefix for the message.
+     * @param errSuffix A suffix for the message.
+     * @return The list, that contains the message; errors if it was not null.
+     */
+    private static List addAdapterError(ClassloaderContext ctx, List errors,
+            ClassloaderAdapterException e, String errPrefix,
+            String errSuffix) {
+        switch (e.getReason()) {
+        case ClassloaderAdapterException.NO_HANDLER:
+            return addError(errors, errPrefix
+                    + " not investigatable (no Loaderhandler found)"
+                    + errSuffix);
+        case ClassloaderAdapterException.NO_ADAPTER:
+            return addError(errors, errPrefix
+                    + " not investigatable (Loaderhandler retrieves no adapter)"
+                    + errSuffix);
+        default:
+            ctx.handleError(errPrefix
+                    + " not investigatable (no Loaderhandlerset)"
+                    + errSuffix, e);
+            return errors;
+        }
+    }
     /**
      * Gets the adapter for the specified classloader and action.
      * @param ctx The context.
@@ -143,11 +177,25 @@ public final class SimpleClassloaderUtil implements ClassloaderUtil {
         if (handlerSet == null) {
             throw new ClassloaderAdapterException(ClassloaderAdapterException.NO_HANDLERSET);
         }
+        Object ev = ClassloaderEvents.getEvents().begin(
+                ClassloaderEvents.ADAPTER_DISPATCH);
+        long start = System.nanoTime();
         ClassLoaderHandler handler = handlerSet.getHandler(ctx, cl, action);
+        ClassLoaderAdapter adapter = null;
+        if (handler != null) {
+            adapter = handler.getAdapter(ctx);
+        }
+        ctx.handleTiming(ClassloaderContext.TIMING_DISPATCH,
+                System.nanoTime() - start);
+        if (ev != null) {
+            ClassloaderEvents.getEvents().commit(ev,
+                    (cl == null) ? null : cl.getClass().getName(),
+                    action + " -> " + ((adapter == null) ? null : adapter
+                            .getClass().getName()), 0);
+        }
         if (handler == null) {
             throw new ClassloaderAdapterException(ClassloaderAdapterException.NO_HANDLER);
         }
-        ClassLoaderAdapter adapter = handler.getAdapter(ctx);
         if (adapter == null) {
             throw new ClassloaderAdapterException(ClassloaderAdapterException.NO_ADAPTER);
         }
@@ -207,23 +255,7 @@ public final class SimpleClassloaderUtil implements ClassloaderUtil {
         try {
             return findAdapter(ctx, cl, action);
         } catch (ClassloaderAdapterException e) {
-            switch (e.getReason()) {
-            case ClassloaderAdapterException.NO_HANDLER:
-                errors.add(errPrefix
-                        + " not investigatable (no Loaderhandler found)"
-                        + errSuffix);
-                break;
-            case ClassloaderAdapterException.NO_ADAPTER:
-                errors
-                        .add(errPrefix
-                                + " not investigatable (Loaderhandler retrieves no adapter)"
-                                + errSuffix);
-                break;
-            default:
-                ctx.handleError(errPrefix
-                        + " not investigatable (no Loaderhandlerset)"
-                        + errSuffix, e);
-            }
+            addAdapterError(ctx, errors, e, errPrefix, errSuffix);
         }
         return null;
     }
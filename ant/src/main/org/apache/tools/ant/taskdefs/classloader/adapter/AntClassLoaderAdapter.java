@@ -23,16 +23,22 @@ import java.lang.reflect.Method;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
 
 import org.apache.tools.ant.AntClassLoader;
 import org.apache.tools.ant.BuildException;
 import org.apache.tools.ant.Project;
+import org.apache.tools.ant.loader.AntClassLoader2;
 import org.apache.tools.ant.taskdefs.classloader.ClassLoaderAdapterAction;
 import org.apache.tools.ant.taskdefs.classloader.ClassloaderContext;
 import org.apache.tools.ant.taskdefs.classloader.ClassLoaderParameters;
+import org.apache.tools.ant.taskdefs.classloader.loader.ManagedAntClassLoader;
+import org.apache.tools.ant.taskdefs.classloader.report.ClassloaderReportHandle;
+import org.apache.tools.ant.taskdefs.classloader.report.ClassloaderReporter;
 import org.apache.tools.ant.types.Path;
 import org.apache.tools.ant.types.URLPath;
 
@@ -106,9 +112,8 @@ public class AntClassLoaderAdapter extends SimpleClassLoaderAdapter {
                     if (task.handleClasspathEntry(classloader, sUrl)) {
                         m.invoke(classloader, new Object[] {
                                 f.getAbsolutePath()});
-                        task.handleDebug("AntClassLoader "
-                                + task.getLoaderName() + ": adding path "
-                                + f.getAbsolutePath());
+                        task.handleDebug("AntClassLoader {0}: adding path {1}",
+                                task.getLoaderName(), f);
                     }
                 } else {
                     task.handleWarning("AntClassLoader " + task.getLoaderName()
@@ -124,6 +129,29 @@ public class AntClassLoaderAdapter extends SimpleClassLoaderAdapter {
         }
     }
 
+    /**
+     * closes a classloader instance, releasing its open jar files.
+     *
+     * @param task
+     *            the calling classloader instance.
+     * @param classloader
+     *            the classloader to close.
+     * @return true if executed successful, false on error
+     */
+    public boolean closeClassLoader(ClassloaderContext.CreateModify task,
+            ClassLoader classloader) {
+        try {
+            classloader.getClass().getMethod("cleanup", null).invoke(
+                    classloader, null);
+        } catch (Exception e) {
+            task.handleError("unable to cleanup AntClassLoader "
+                    + task.getLoaderName(), e);
+            return false;
+        }
+        task.handleDebug("AntClassLoader {0} closed.", task.getLoaderName());
+        return true;
+    }
+
     /**
      * returns the actual classpath of a classloader instance.
      *
@@ -211,8 +239,8 @@ public class AntClassLoaderAdapter extends SimpleClassLoaderAdapter {
         try {
             Method m = cl.getClass().getMethod("addJavaLibraries", null);
             m.invoke(cl, null);
-            task.handleDebug("Loader " + loaderId
-                    + ": calling addJavaLibraries");
+            task.handleDebug("Loader {0}: calling addJavaLibraries",
+                    loaderId);
             return true;
         } catch (Exception e) {
             task.handleError(
@@ -232,8 +260,9 @@ public class AntClassLoaderAdapter extends SimpleClassLoaderAdapter {
                     new Class[] {String.class});
             for (int i = 0; i < pkgs.length; i++) {
                 m.invoke(cl, new Object[] {pkgs[i]});
-                task.handleDebug("Loader " + loaderId
-                    + ": calling addLoaderPackageRoot(\"" + pkgs[i] + "\")");
+                task.handleDebug(
+                        "Loader {0}: calling addLoaderPackageRoot(\"{1}\")",
+                        loaderId, pkgs[i]);
             }
             return true;
         } catch (Exception e) {
@@ -254,8 +283,9 @@ public class AntClassLoaderAdapter extends SimpleClassLoaderAdapter {
                     new Class[] {String.class});
             for (int i = 0; i < pkgs.length; i++) {
                 m.invoke(cl, new Object[] {pkgs[i]});
-                task.handleDebug("Loader " + loaderId
-                    + ": calling addSystemPackageRoot(\"" + pkgs[i] + "\")");
+                task.handleDebug(
+                        "Loader {0}: calling addSystemPackageRoot(\"{1}\")",
+                        loaderId, pkgs[i]);
             }
             return true;
         } catch (Exception e) {
@@ -270,10 +300,16 @@ public class AntClassLoaderAdapter extends SimpleClassLoaderAdapter {
             ClassLoader superLoader, Path path, String loaderId) {
         ClassLoader loader = null;
         try {
-            loader = (ClassLoader) Class.forName(
+            Class loaderClass = Class.forName(
                     "org.apache.tools.ant.loader.AntClassLoader2", true,
-                    superLoader).newInstance();
-            task.handleDebug("AntClassLoader " + loaderId + " created");
+                    superLoader);
+            if (loaderClass == AntClassLoader2.class) {
+                // compatible with this adapter, so keep statistics.
+                loader = new ManagedAntClassLoader();
+            } else {
+                loader = (ClassLoader) loaderClass.newInstance();
+            }
+            task.handleDebug("AntClassLoader {0} created", loaderId);
             // check whether Project classes are compatible
             Class osl = Class.forName("org.apache.tools.ant.Project", true,
                     superLoader);
@@ -306,7 +342,7 @@ public class AntClassLoaderAdapter extends SimpleClassLoaderAdapter {
             Method m = cl.getClass().getMethod("setIsolated",
                     new Class[] {Boolean.TYPE});
             m.invoke(cl, new Object[] {Boolean.TRUE});
-            task.handleDebug("Loader " + loaderId + ": setting isolated=true");
+            task.handleDebug("Loader {0}: setting isolated=true", loaderId);
             return true;
         } catch (Exception e) {
             task.handleError("unable to call setIsolated on AntClassLoader "
@@ -323,7 +359,7 @@ public class AntClassLoaderAdapter extends SimpleClassLoaderAdapter {
             Method m = cl.getClass().getMethod("setParent",
                     new Class[] {ClassLoader.class});
             m.invoke(cl, new Object[] {parent});
-            task.handleDebug("Loader " + loaderId + ": setting parentLoader");
+            task.handleDebug("Loader {0}: setting parentLoader", loaderId);
         } catch (Exception e) {
             throw new BuildException(e);
         }
@@ -338,8 +374,8 @@ public class AntClassLoaderAdapter extends SimpleClassLoaderAdapter {
             Method m = cl.getClass().getMethod("setParentFirst",
                     new Class[] {Boolean.TYPE});
             m.invoke(cl, new Object[] {Boolean.FALSE});
-            task.handleDebug("Loader " + loaderId
-                    + ": setting parentFirst=false");
+            task.handleDebug("Loader {0}: setting parentFirst=false",
+                    loaderId);
             return true;
         } catch (Exception e) {
             task.handleError("unable to call setParentFirst on AntClassLoader "
@@ -385,6 +421,56 @@ public class AntClassLoaderAdapter extends SimpleClassLoaderAdapter {
         }
         return super.initClassLoader(task, classloader);
     }
+    /**
+     * reports the estimated memory footprint of a classloader instance.
+     * In addition to the Metaspace share, the number of open jar files and
+     * the number of path components are reported.
+     *
+     * @param to
+     *            the Reporter Object to report to.
+     * @param task
+     *            the calling ClassloaderBase-task.
+     * @param classloader
+     *            the classloader instance to report about.
+     * @param role
+     *            the name of the classloader instance.
+     */
+    public void reportFootprint(ClassloaderReporter to,
+            ClassloaderContext.Report task, ClassLoader classloader,
+            ClassloaderReportHandle role) {
+        super.reportFootprint(to, task, classloader, role);
+        int jars = getFieldSize(classloader, "jarFiles");
+        if (jars >= 0) {
+            to.reportAttribute("openJarFiles", String.valueOf(jars));
+        }
+        int entries = getFieldSize(classloader, "pathComponents");
+        if (entries >= 0) {
+            to.reportAttribute("indexEntries", String.valueOf(entries));
+        }
+    }
+    private static int getFieldSize(ClassLoader cl, String name) {
+        // the field is declared by AntClassLoader, that might be loaded
+        // by another classloader than this adapter.
+        for (Class c = cl.getClass(); c != null; c = c.getSuperclass()) {
+            if (!AntClassLoader.class.getName().equals(c.getName())) {
+                continue;
+            }
+            try {
+                Field field = c.getDeclaredField(name);
+                field.setAccessible(true);
+                Object value = field.get(cl);
+                if (value instanceof Map) {
+                    return ((Map) value).size();
+                }
+                if (value instanceof Collection) {
+                    return ((Collection) value).size();
+                }
+            } catch (Exception e) {
+                return -1;
+            }
+        }
+        return -1;
+    }
     /**
      * Checks whether the adapter supports an action.
      *
@@ -17,13 +17,17 @@
 
 package org.apache.tools.ant.taskdefs.classloader.adapter;
 
+import java.lang.instrument.Instrumentation;
 import java.lang.reflect.Method;
 import java.util.Map;
 
 import org.apache.tools.ant.taskdefs.classloader.ClassLoaderAdapter;
 import org.apache.tools.ant.taskdefs.classloader.ClassLoaderAdapterAction;
 import org.apache.tools.ant.taskdefs.classloader.ClassloaderContext;
+import org.apache.tools.ant.taskdefs.classloader.ClassloaderFootprint;
 import org.apache.tools.ant.taskdefs.classloader.ClassLoaderParameters;
+import org.apache.tools.ant.taskdefs.classloader.ClassLoaderStatistics;
+import org.apache.tools.ant.taskdefs.classloader.loader.ClassloaderAgent;
 import org.apache.tools.ant.taskdefs.classloader.report.ClassloaderReporter;
 import org.apache.tools.ant.taskdefs.classloader.report.ClassloaderReportHandle;
 
@@ -94,6 +98,21 @@ public class SimpleClassLoaderAdapter implements ClassLoaderAdapter {
         return false;
     }
 
+    /**
+     * closes a classloader instance.
+     *
+     * @param task
+     *            the calling classloader instance.
+     * @param classloader
+     *            the classloader to close.
+     * @return true if executed successful, false on error
+     */
+    public boolean closeClassLoader(ClassloaderContext.CreateModify task,
+            ClassLoader classloader) {
+        task.handleError("close not supported (Adapter error)");
+        return false;
+    }
+
     /**
      * creates a new classloader instance.
      *
@@ -213,9 +232,11 @@ public class SimpleClassLoaderAdapter implements ClassLoaderAdapter {
             for (int i = 0; i < classes.length; i++) {
                 m.invoke(cl, new Object[] {classes[i],
                         onOff ? Boolean.TRUE : Boolean.FALSE});
-                task.handleDebug("Loader " + name
-                        + ": setting ClassAssertionStatus for " + classes[i]
-                        + "=" + onOff);
+                if (task.isDebugEnabled()) {
+                    task.handleDebug("Loader " + name
+                            + ": setting ClassAssertionStatus for "
+                            + classes[i] + "=" + onOff);
+                }
             }
             return true;
         } catch (NoSuchMethodException e) {
@@ -238,8 +259,8 @@ public class SimpleClassLoaderAdapter implements ClassLoaderAdapter {
             Method m = cl.getClass().getMethod("setDefaultAssertionStatus",
                     new Class[] {Boolean.TYPE});
             m.invoke(cl, new Object[] {onOff});
-            task.handleDebug("Loader " + name
-                    + ": setting DefaultAssertionStatus=" + onOff);
+            task.handleDebug("Loader {0}: setting DefaultAssertionStatus={1}",
+                    name, onOff);
             return true;
         } catch (NoSuchMethodException e) {
             task.handleWarning("Loader " + name
@@ -263,9 +284,11 @@ public class SimpleClassLoaderAdapter implements ClassLoaderAdapter {
             for (int i = 0; i < pkgs.length; i++) {
                 m.invoke(cl, new Object[] {pkgs[i],
                         onOff ? Boolean.TRUE : Boolean.FALSE});
-                task.handleDebug("Loader " + name
-                        + ": setting PackageAssertionStatus for " + pkgs[i]
-                        + "=" + onOff);
+                if (task.isDebugEnabled()) {
+                    task.handleDebug("Loader " + name
+                            + ": setting PackageAssertionStatus for "
+                            + pkgs[i] + "=" + onOff);
+                }
             }
             return true;
         } catch (NoSuchMethodException e) {
@@ -346,7 +369,9 @@ public class SimpleClassLoaderAdapter implements ClassLoaderAdapter {
         return null;
     }
     /**
-     * performs additional reporting.
+     * performs additional reporting. This implementation reports the
+     * statistics of classloaders, that keep them. For other classloaders,
+     * the class counts are reported if the ClassloaderAgent is loaded.
      *
      * @param to
      *            the Reporter Object to report to.
@@ -360,6 +385,43 @@ public class SimpleClassLoaderAdapter implements ClassLoaderAdapter {
     public void report(ClassloaderReporter to,
             ClassloaderContext.Report task, ClassLoader classloader,
             ClassloaderReportHandle role) {
+        if (classloader instanceof ClassLoaderStatistics.Source) {
+            ((ClassLoaderStatistics.Source) classloader).getStatistics()
+                    .report(to);
+            return;
+        }
+        Instrumentation inst = ClassloaderAgent.getInstrumentation();
+        if (inst != null) {
+            Class[] all = inst.getAllLoadedClasses();
+            int defined = 0;
+            for (int i = 0; i < all.length; i++) {
+                if (all[i].getClassLoader() == classloader) {
+                    defined++;
+                }
+            }
+            to.reportAttribute("definedClasses", String.valueOf(defined));
+            to.reportAttribute("initiatedClasses", String.valueOf(inst
+                    .getInitiatedClasses(classloader).length));
+        }
+    }
+    /**
+     * reports the estimated memory footprint of a classloader instance.
+     * This implementation reports the estimated Metaspace share, if the
+     * number of classes defined by the classloader is known.
+     *
+     * @param to
+     *            the Reporter Object to report to.
+     * @param task
+     *            the calling ClassloaderBase-task.
+     * @param classloader
+     *            the classloader instance to report about.
+     * @param role
+     *            the name of the classloader instance.
+     */
+    public void reportFootprint(ClassloaderReporter to,
+            ClassloaderContext.Report task, ClassLoader classloader,
+            ClassloaderReportHandle role) {
+        ClassloaderFootprint.report(to, classloader);
     }
 
 }
@@ -17,6 +17,7 @@
 
 package org.apache.tools.ant.taskdefs.classloader.adapter;
 
+import java.io.IOException;
 import java.lang.reflect.Method;
 import java.net.MalformedURLException;
 import java.net.URL;
@@ -27,6 +28,9 @@ import java.util.Set;
 
 import org.apache.tools.ant.taskdefs.classloader.ClassLoaderAdapterAction;
 import org.apache.tools.ant.taskdefs.classloader.ClassloaderContext;
+import org.apache.tools.ant.taskdefs.classloader.loader.ManagedURLClassLoader;
+import org.apache.tools.ant.taskdefs.classloader.report.ClassloaderReportHandle;
+import org.apache.tools.ant.taskdefs.classloader.report.ClassloaderReporter;
 
 /**
  * A ClassLoaderAdapter for a java.net.URLClassLoader
@@ -46,11 +50,14 @@ public class URLClassLoaderAdapter extends SimpleClassLoaderAdapter {
 
         URLClassLoader ucl = (URLClassLoader) classloader;
         String loaderId = task.getLoaderName();
-        Method meth;
+        Method meth = null;
         try {
-            meth = URLClassLoader.class.getDeclaredMethod("addURL",
-                    new Class[] {URL.class});
-            meth.setAccessible(true);
+            // a ManagedURLClassLoader appends without reflection.
+            if (!(ucl instanceof ManagedURLClassLoader)) {
+                meth = URLClassLoader.class.getDeclaredMethod("addURL",
+                        new Class[] {URL.class});
+                meth.setAccessible(true);
+            }
         } catch (SecurityException e1) {
             task.handleError("unable to setAccessible(true) for method addURL",
                     e1);
@@ -67,9 +74,13 @@ public class URLClassLoaderAdapter extends SimpleClassLoaderAdapter {
                 String sUrl = url.toString();
                 if (localEntries.add(sUrl)
                         && task.handleClasspathEntry(ucl, sUrl)) {
-                    meth.invoke(ucl, new Object[] {url});
-                    task.handleDebug("URLClassLoader " + loaderId
-                            + ": adding path " + url);
+                    if (meth == null) {
+                        ((ManagedURLClassLoader) ucl).addURL(url);
+                    } else {
+                        meth.invoke(ucl, new Object[] {url});
+                    }
+                    task.handleDebug("URLClassLoader {0}: adding path {1}",
+                            loaderId, url);
                 }
             } catch (MalformedURLException e) {
                 task.handleError("createURL(\"" + list[i] + "\")", e);
@@ -81,6 +92,27 @@ public class URLClassLoaderAdapter extends SimpleClassLoaderAdapter {
         }
         return true;
     }
+    /**
+     * closes a classloader instance, releasing its open jar files.
+     *
+     * @param task
+     *            the calling classloader instance.
+     * @param classloader
+     *            the classloader to close.
+     * @return true if executed successful, false on error
+     */
+    public boolean closeClassLoader(ClassloaderContext.CreateModify task,
+            ClassLoader classloader) {
+        try {
+            ((URLClassLoader) classloader).close();
+        } catch (IOException e) {
+            task.handleError("unable to close URLClassLoader "
+                    + task.getLoaderName(), e);
+            return false;
+        }
+        task.handleDebug("URLClassLoader {0} closed.", task.getLoaderName());
+        return true;
+    }
     /**
      * returns the actual classpath of a classloader instance.
      *
@@ -107,6 +139,36 @@ public class URLClassLoaderAdapter extends SimpleClassLoaderAdapter {
         }
         return result;
     }
+    /**
+     * reports the estimated memory footprint of a classloader instance.
+     * In addition to the Metaspace share, the number of jar files and the
+     * number of classpath entries are reported. URLClassLoader opens a
+     * jar file on its first lookup and keeps it open until it is closed.
+     *
+     * @param to
+     *            the Reporter Object to report to.
+     * @param task
+     *            the calling ClassloaderBase-task.
+     * @param classloader
+     *            the classloader instance to report about.
+     * @param role
+     *            the name of the classloader instance.
+     */
+    public void reportFootprint(ClassloaderReporter to,
+            ClassloaderContext.Report task, ClassLoader classloader,
+            ClassloaderReportHandle role) {
+        super.reportFootprint(to, task, classloader, role);
+        URL[] urls = ((URLClassLoader) classloader).getURLs();
+        to.reportAttribute("indexEntries", String.valueOf(urls.length));
+        // the jar files of other URLClassLoaders are hidden in the JDK.
+        if (classloader instanceof ManagedURLClassLoader) {
+            ManagedURLClassLoader managed = (ManagedURLClassLoader) classloader;
+            to.reportAttribute("openJarFiles", String.valueOf(
+                    managed.getOpenJarFiles()));
+            to.reportAttribute("sharedJarFiles", String.valueOf(
+                    managed.getSharedJarFiles()));
+        }
+    }
     /**
      * Checks whether the adapter supports an action.
      *
@@ -148,16 +210,16 @@ public class URLClassLoaderAdapter extends SimpleClassLoaderAdapter {
         // the bootstrap loader
         // so we don't need the superLoader
         URL[] urls = (URL[]) ucp.toArray(new URL[ucp.size()]);
-        URLClassLoader cl = new URLClassLoader(urls, parent);
-        task.handleDebug("URLClassLoader " + loaderId + " created.");
+        URLClassLoader cl = new ManagedURLClassLoader(urls, parent);
+        task.handleDebug("URLClassLoader {0} created.", loaderId);
         for (int i = 0; i < urls.length; i++) {
-            task.handleDebug("URLClassLoader " + loaderId + ": adding path "
-                    + urls[i]);
+            task.handleDebug("URLClassLoader {0}: adding path {1}", loaderId,
+                    urls[i]);
         }
 
         if (parent != null) {
-            task.handleDebug("URLClassLoader " + loaderId
-                    + ": setting parent loader " + parent);
+            task.handleDebug("URLClassLoader {0}: setting parent loader {1}",
+                    loaderId, parent);
         }
 
         return cl;
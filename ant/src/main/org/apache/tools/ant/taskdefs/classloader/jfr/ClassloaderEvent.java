@@ -0,0 +1,71 @@
+/*
+ * Copyright  2005 The Apache Software Foundation
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.tools.ant.taskdefs.classloader.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder events of the classloader tasks.
+ * @since Ant 1.7
+ */
+@Category({"Ant", "Classloader"})
+abstract class ClassloaderEvent extends Event {
+    /**
+     * The event for a loader creation.
+     */
+    @Name("org.apache.ant.classloader.Create")
+    @Label("Classloader Create")
+    static final class Create extends ClassloaderEvent {
+    }
+    /**
+     * The event for appending a classpath.
+     */
+    @Name("org.apache.ant.classloader.Append")
+    @Label("Classloader Append")
+    static final class Append extends ClassloaderEvent {
+    }
+    /**
+     * The event for a duplicate entry check.
+     */
+    @Name("org.apache.ant.classloader.DuplicateCheck")
+    @Label("Classloader Duplicate Check")
+    static final class DuplicateCheck extends ClassloaderEvent {
+    }
+    /**
+     * The event for an adapter lookup.
+     */
+    @Name("org.apache.ant.classloader.AdapterDispatch")
+    @Label("Classloader Adapter Dispatch")
+    static final class AdapterDispatch extends ClassloaderEvent {
+    }
+    /**
+     * The event for a report phase.
+     */
+    @Name("org.apache.ant.classloader.Report")
+    @Label("Classloader Report")
+    static final class Report extends ClassloaderEvent {
+    }
+    @Label("Name")
+    String name;
+    @Label("Detail")
+    String detail;
+    @Label("Count")
+    int count;
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright  2005 The Apache Software Foundation
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.tools.ant.taskdefs.classloader.jfr;
+
+import org.apache.tools.ant.taskdefs.classloader.ClassloaderEvents;
+
+/**
+ * Records the events of the classloader tasks with the flight recorder.
+ * Instantiated by ClassloaderEvents, if the flight recorder is available.
+ * @since Ant 1.7
+ */
+public class JfrClassloaderEvents extends ClassloaderEvents {
+    /**
+     * Default constructor.
+     */
+    public JfrClassloaderEvents() {
+    }
+    /**
+     * Starts timing an event.
+     * @param type The event type.
+     * @return The started event or null if the event is not enabled.
+     */
+    public Object begin(int type) {
+        ClassloaderEvent event;
+        switch (type) {
+        case CREATE:
+            event = new ClassloaderEvent.Create();
+            break;
+        case APPEND:
+            event = new ClassloaderEvent.Append();
+            break;
+        case DUPLICATE_CHECK:
+            event = new ClassloaderEvent.DuplicateCheck();
+            break;
+        case ADAPTER_DISPATCH:
+            event = new ClassloaderEvent.AdapterDispatch();
+            break;
+        case REPORT:
+            event = new ClassloaderEvent.Report();
+            break;
+        default:
+            return null;
+        }
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+    /**
+     * Ends and records an event.
+     * @param event The event as returned by begin; null is ignored.
+     * @param name The name of the classloader or of the report phase.
+     * @param detail Additional information.
+     * @param count Number of affected elements.
+     */
+    public void commit(Object event, String name, String detail, int count) {
+        if (event == null) {
+            return;
+        }
+        ClassloaderEvent e = (ClassloaderEvent) event;
+        e.end();
+        if (e.shouldCommit()) {
+            e.name = name;
+            e.detail = detail;
+            e.count = count;
+            e.commit();
+        }
+    }
+}
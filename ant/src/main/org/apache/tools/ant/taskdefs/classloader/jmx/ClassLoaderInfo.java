@@ -0,0 +1,156 @@
+/*
+ * Copyright  2005 The Apache Software Foundation
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.tools.ant.taskdefs.classloader.jmx;
+
+import java.lang.ref.WeakReference;
+
+import org.apache.tools.ant.taskdefs.classloader.ClassLoaderStatistics;
+
+/**
+ * Management information about a classloader created or modified by the
+ * classloader task. The classloader is only weakly referenced.
+ * @since Ant 1.7
+ */
+public class ClassLoaderInfo implements ClassLoaderInfoMBean {
+    private final long creationTime;
+    private volatile String[] entries;
+    private volatile long lastModified;
+    private final WeakReference loader;
+    private final String name;
+    private final String parent;
+    /**
+     * Constructor.
+     * @param name The name of the classloader.
+     * @param loader The classloader.
+     * @param parent The name of the parent classloader or null.
+     * @param entries The classpath entries or null if unknown.
+     */
+    public ClassLoaderInfo(String name, ClassLoader loader, String parent,
+            String[] entries) {
+        this.name = name;
+        this.loader = new WeakReference(loader);
+        this.parent = parent;
+        this.entries = entries;
+        this.creationTime = System.currentTimeMillis();
+        this.lastModified = creationTime;
+    }
+    /**
+     * Gets the classloader.
+     * @return The classloader or null if it has been collected.
+     */
+    public ClassLoader getClassLoader() {
+        return (ClassLoader) loader.get();
+    }
+    /**
+     * Gets the time the classloader was registered.
+     * @return The time in milliseconds since 1970.
+     */
+    public long getCreationTime() {
+        return creationTime;
+    }
+    /**
+     * Gets the classes defined by the classloader.
+     * @return The number of classes or -1 if unknown.
+     */
+    public long getDefinedClasses() {
+        ClassLoaderStatistics s = getStatistics();
+        return (s == null) ? -1 : s.getDefinedClasses();
+    }
+    /**
+     * Gets the classpath entries.
+     * @return The entries or null if unknown.
+     */
+    public String[] getEntries() {
+        String[] e = entries;
+        return (e == null) ? null : (String[]) e.clone();
+    }
+    /**
+     * Gets the number of classpath entries.
+     * @return The number of entries or -1 if unknown.
+     */
+    public int getEntryCount() {
+        String[] e = entries;
+        return (e == null) ? -1 : e.length;
+    }
+    /**
+     * Gets the time the classpath was last modified.
+     * @return The time in milliseconds since 1970.
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+    /**
+     * Gets the classname of the classloader.
+     * @return The classname or null if the loader has been collected.
+     */
+    public String getLoaderClass() {
+        ClassLoader cl = getClassLoader();
+        return (cl == null) ? null : cl.getClass().getName();
+    }
+    /**
+     * Gets the number of successful class lookups.
+     * @return The number of lookups or -1 if unknown.
+     */
+    public long getLookupHits() {
+        ClassLoaderStatistics s = getStatistics();
+        return (s == null) ? -1 : s.getFindClassHits();
+    }
+    /**
+     * Gets the number of failed class lookups.
+     * @return The number of lookups or -1 if unknown.
+     */
+    public long getLookupMisses() {
+        ClassLoaderStatistics s = getStatistics();
+        return (s == null) ? -1 : s.getFindClassMisses();
+    }
+    /**
+     * Gets the name of the classloader.
+     * @return The name.
+     */
+    public String getName() {
+        return name;
+    }
+    /**
+     * Gets the name of the parent classloader.
+     * @return The name or null if not specified.
+     */
+    public String getParent() {
+        return parent;
+    }
+    private ClassLoaderStatistics getStatistics() {
+        ClassLoader cl = getClassLoader();
+        if (cl instanceof ClassLoaderStatistics.Source) {
+            return ((ClassLoaderStatistics.Source) cl).getStatistics();
+        }
+        return null;
+    }
+    /**
+     * Indicates whether the classloader is still reachable.
+     * @return False, if the classloader has been garbage collected.
+     */
+    public boolean isAlive() {
+        return loader.get() != null;
+    }
+    /**
+     * Updates the classpath entries after the classpath was modified.
+     * @param entries The entries or null if unknown.
+     */
+    public void setEntries(String[] entries) {
+        this.entries = entries;
+        this.lastModified = System.currentTimeMillis();
+    }
+}
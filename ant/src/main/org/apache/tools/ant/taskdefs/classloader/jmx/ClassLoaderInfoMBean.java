@@ -0,0 +1,80 @@
+/*
+ * Copyright  2005 The Apache Software Foundation
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.tools.ant.taskdefs.classloader.jmx;
+
+/**
+ * Management interface of a classloader created or modified by the
+ * classloader task.
+ * @since Ant 1.7
+ */
+public interface ClassLoaderInfoMBean {
+    /**
+     * Gets the time the classloader was registered.
+     * @return The time in milliseconds since 1970.
+     */
+    long getCreationTime();
+    /**
+     * Gets the classes defined by the classloader.
+     * @return The number of classes or -1 if unknown.
+     */
+    long getDefinedClasses();
+    /**
+     * Gets the classpath entries.
+     * @return The entries or null if unknown.
+     */
+    String[] getEntries();
+    /**
+     * Gets the number of classpath entries.
+     * @return The number of entries or -1 if unknown.
+     */
+    int getEntryCount();
+    /**
+     * Gets the classname of the classloader.
+     * @return The classname or null if the loader has been collected.
+     */
+    String getLoaderClass();
+    /**
+     * Gets the time the classpath was last modified.
+     * @return The time in milliseconds since 1970.
+     */
+    long getLastModified();
+    /**
+     * Gets the number of successful class lookups.
+     * @return The number of lookups or -1 if unknown.
+     */
+    long getLookupHits();
+    /**
+     * Gets the number of failed class lookups.
+     * @return The number of lookups or -1 if unknown.
+     */
+    long getLookupMisses();
+    /**
+     * Gets the name of the classloader.
+     * @return The name.
+     */
+    String getName();
+    /**
+     * Gets the name of the parent classloader.
+     * @return The name or null if not specified.
+     */
+    String getParent();
+    /**
+     * Indicates whether the classloader is still reachable.
+     * @return False, if the classloader has been garbage collected.
+     */
+    boolean isAlive();
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright  2005 The Apache Software Foundation
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.tools.ant.taskdefs.classloader.jmx;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.Project;
+import org.apache.tools.ant.taskdefs.ClassloaderReport;
+
+/**
+ * Registers classloaders created or modified by the classloader task as
+ * MBeans of the platform MBeanServer. The registry itself is registered
+ * as <code>org.apache.ant.classloader:type=Registry</code>, each classloader
+ * as <code>org.apache.ant.classloader:type=ClassLoader,name=&lt;name&gt;</code>.
+ * @since Ant 1.7
+ */
+public final class ClassloaderRegistry implements ClassloaderRegistryMBean {
+    /**
+     * The JMX domain.
+     */
+    public static final String DOMAIN = "org.apache.ant.classloader";
+    private static ClassloaderRegistry singleton = null;
+    private final HashMap infos = new HashMap();
+    private WeakReference project = new WeakReference(null);
+    private final MBeanServer server;
+    private ClassloaderRegistry(MBeanServer server) {
+        this.server = server;
+    }
+    /**
+     * Gets the registry, registering it on first use.
+     * @return The registry.
+     */
+    public static synchronized ClassloaderRegistry getRegistry() {
+        if (singleton == null) {
+            ClassloaderRegistry r = new ClassloaderRegistry(ManagementFactory
+                    .getPlatformMBeanServer());
+            r.registerMBean(r, newObjectName("type=Registry"));
+            singleton = r;
+        }
+        return singleton;
+    }
+    private static ObjectName newObjectName(String properties) {
+        try {
+            return new ObjectName(DOMAIN + ":" + properties);
+        } catch (JMException e) {
+            throw new BuildException(e);
+        }
+    }
+    /**
+     * Gets the name of a classloader's MBean.
+     * @param name The name of the classloader.
+     * @return The name of the MBean.
+     */
+    public static ObjectName getObjectName(String name) {
+        return newObjectName("type=ClassLoader,name=" + ObjectName.quote(name));
+    }
+    /**
+     * Creates a classloader report of the project, that registered the
+     * last classloader.
+     * @param format The format, <code>xml</code> or <code>txt</code>.
+     * @param hierarchy The hierarchy, <code>flat</code> or <code>tree</code>.
+     * @return The report.
+     */
+    public String dumpReport(String format, String hierarchy) {
+        Project p = (Project) project.get();
+        if (p == null) {
+            throw new IllegalStateException("no project available");
+        }
+        ClassloaderReport report = new ClassloaderReport();
+        report.setProject(p);
+        report.setTaskName("classloaderreport");
+        try {
+            return report.createReport((format == null) ? null
+                    : new ClassloaderReport.Format(format),
+                    (hierarchy == null) ? null
+                            : new ClassloaderReport.Hierarchy(hierarchy));
+        } catch (BuildException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+    }
+    /**
+     * Gets the info of a registered classloader.
+     * @param name The name of the classloader.
+     * @return The info or null if no such classloader is registered.
+     */
+    public synchronized ClassLoaderInfo getInfo(String name) {
+        return (ClassLoaderInfo) infos.get(name);
+    }
+    /**
+     * Gets the names of the registered classloaders.
+     * @return The names.
+     */
+    public synchronized String[] getLoaderNames() {
+        String[] result = (String[]) infos.keySet().toArray(
+                new String[infos.size()]);
+        Arrays.sort(result);
+        return result;
+    }
+    /**
+     * Registers a classloader after it was created or its classpath
+     * was modified.
+     * @param p The project, that manages the classloader.
+     * @param name The name of the classloader.
+     * @param cl The classloader.
+     * @param parent The name of the parent classloader or null.
+     * @param entries The classpath entries or null if unknown.
+     */
+    public synchronized void register(Project p, String name,
+            ClassLoader cl, String parent, String[] entries) {
+        project = new WeakReference(p);
+        ClassLoaderInfo info = (ClassLoaderInfo) infos.get(name);
+        if ((info != null) && (info.getClassLoader() == cl)) {
+            info.setEntries(entries);
+            return;
+        }
+        if (info != null) {
+            unregister(name);
+        }
+        info = new ClassLoaderInfo(name, cl, parent, entries);
+        registerMBean(info, getObjectName(name));
+        infos.put(name, info);
+    }
+    private void registerMBean(Object mbean, ObjectName objectName) {
+        try {
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(mbean, objectName);
+        } catch (JMException e) {
+            throw new BuildException("unable to register MBean "
+                    + objectName, e);
+        }
+    }
+    /**
+     * Removes a classloader from the registry.
+     * @param name The name of the classloader.
+     */
+    public synchronized void unregister(String name) {
+        if (infos.remove(name) == null) {
+            return;
+        }
+        try {
+            ObjectName objectName = getObjectName(name);
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+        } catch (JMException e) {
+            throw new BuildException("unable to unregister MBean for "
+                    + name, e);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright  2005 The Apache Software Foundation
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.tools.ant.taskdefs.classloader.jmx;
+
+/**
+ * Management interface of the registry of classloaders created or modified
+ * by the classloader task.
+ * @since Ant 1.7
+ */
+public interface ClassloaderRegistryMBean {
+    /**
+     * Creates a classloader report.
+     * @param format The format, <code>xml</code> or <code>txt</code>;
+     *   defaults to <code>txt</code>.
+     * @param hierarchy The hierarchy, <code>flat</code> or <code>tree</code>;
+     *   defaults with respect to the format.
+     * @return The report.
+     */
+    String dumpReport(String format, String hierarchy);
+    /**
+     * Gets the names of the registered classloaders.
+     * @return The names.
+     */
+    String[] getLoaderNames();
+}
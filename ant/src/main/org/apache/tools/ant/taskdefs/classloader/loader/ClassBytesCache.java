@@ -0,0 +1,213 @@
+/*
+ * Copyright  2005 The Apache Software Foundation
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.tools.ant.taskdefs.classloader.loader;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A JVM wide, size bounded cache of inflated class bytes, shared by the
+ * classloaders created by the classloader task. The bytes are kept off the
+ * heap in direct buffers and keyed by the content fingerprint of the jar
+ * file and the name of the entry, so identical jar files at different
+ * locations share their entries. If the cache is full, the least recently
+ * used entries are evicted. The cache is disabled, until a capacity is set.
+ * If a direct buffer can't be allocated, the bytes are not cached.
+ * @since Ant 1.7
+ */
+public final class ClassBytesCache {
+    private static long capacity = 0;
+    private static final LongAdder EVICTIONS = new LongAdder();
+    private static final LongAdder HITS = new LongAdder();
+    // access order, so the least recently used entry comes first.
+    private static final LinkedHashMap ENTRIES = new LinkedHashMap(256,
+            0.75f, true);
+    private static final LongAdder MISSES = new LongAdder();
+    private static long size = 0;
+    private ClassBytesCache() {
+    }
+    /**
+     * Gets the cached bytes of a jar entry.
+     * @param fingerprint The content fingerprint of the jar file.
+     * @param name The name of the entry.
+     * @return The bytes or null, if they are not cached.
+     */
+    public static byte[] get(String fingerprint, String name) {
+        ByteBuffer buffer;
+        synchronized (ENTRIES) {
+            if (capacity <= 0) {
+                return null;
+            }
+            buffer = (ByteBuffer) ENTRIES.get(fingerprint + "!/" + name);
+        }
+        if (buffer == null) {
+            MISSES.increment();
+            return null;
+        }
+        HITS.increment();
+        byte[] result = new byte[buffer.capacity()];
+        // a duplicate, so concurrent readers don't share the position.
+        buffer.duplicate().get(result);
+        return result;
+    }
+    /**
+     * Gets the capacity.
+     * @return The capacity in bytes, 0 if the cache is disabled.
+     */
+    public static long getCapacity() {
+        synchronized (ENTRIES) {
+            return capacity;
+        }
+    }
+    /**
+     * Gets the limit of direct memory of the JVM, as set by
+     * <code>-XX:MaxDirectMemorySize</code>; by default it is the maximum
+     * heap size.
+     * @return The limit in bytes.
+     */
+    public static long getDirectMemoryLimit() {
+        String option = "-XX:MaxDirectMemorySize=";
+        Iterator i = ManagementFactory.getRuntimeMXBean().getInputArguments()
+                .iterator();
+        long limit = -1;
+        while (i.hasNext()) {
+            String arg = (String) i.next();
+            if (arg.startsWith(option)) {
+                // the last one counts.
+                limit = parseSize(arg.substring(option.length()));
+            }
+        }
+        return (limit > 0) ? limit : Runtime.getRuntime().maxMemory();
+    }
+    /**
+     * Gets the number of entries evicted to keep the capacity.
+     * @return The number of evictions.
+     */
+    public static long getEvictions() {
+        return EVICTIONS.sum();
+    }
+    /**
+     * Gets the number of lookups, that found the bytes.
+     * @return The number of hits.
+     */
+    public static long getHits() {
+        return HITS.sum();
+    }
+    /**
+     * Gets the number of lookups, that did not find the bytes.
+     * @return The number of misses.
+     */
+    public static long getMisses() {
+        return MISSES.sum();
+    }
+    /**
+     * Gets the size of the cached bytes.
+     * @return The size in bytes.
+     */
+    public static long getSize() {
+        synchronized (ENTRIES) {
+            return size;
+        }
+    }
+    /**
+     * Checks whether the cache is enabled.
+     * @return True, if a capacity is set.
+     */
+    public static boolean isEnabled() {
+        return getCapacity() > 0;
+    }
+    /**
+     * Caches the bytes of a jar entry. Bytes larger than a quarter of the
+     * capacity are not cached.
+     * @param fingerprint The content fingerprint of the jar file.
+     * @param name The name of the entry.
+     * @param data The bytes.
+     */
+    public static void put(String fingerprint, String name, byte[] data) {
+        synchronized (ENTRIES) {
+            if ((capacity <= 0) || (data.length > capacity / 4)) {
+                return;
+            }
+        }
+        ByteBuffer buffer;
+        try {
+            buffer = ByteBuffer.allocateDirect(data.length);
+        } catch (OutOfMemoryError e) {
+            // direct memory is exhausted, e.g. by evicted buffers not yet
+            // collected; the class is loaded anyway.
+            return;
+        }
+        buffer.put(data);
+        buffer.flip();
+        synchronized (ENTRIES) {
+            ByteBuffer old = (ByteBuffer) ENTRIES.put(fingerprint + "!/"
+                    + name, buffer);
+            if (old != null) {
+                size -= old.capacity();
+            }
+            size += data.length;
+            trim();
+        }
+    }
+    /**
+     * Sets the capacity, evicting entries if necessary.
+     * @param bytes The capacity in bytes, 0 to disable and clear the cache.
+     */
+    public static void setCapacity(long bytes) {
+        synchronized (ENTRIES) {
+            capacity = Math.max(bytes, 0);
+            trim();
+        }
+    }
+    private static long parseSize(String value) {
+        long unit = 1;
+        switch (value.isEmpty() ? ' ' : value.charAt(value.length() - 1)) {
+        case 'k':
+        case 'K':
+            unit = 1024L;
+            break;
+        case 'm':
+        case 'M':
+            unit = 1024L * 1024L;
+            break;
+        case 'g':
+        case 'G':
+            unit = 1024L * 1024L * 1024L;
+            break;
+        default:
+            break;
+        }
+        try {
+            return Long.parseLong(unit == 1 ? value
+                    : value.substring(0, value.length() - 1)) * unit;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+    private static void trim() {
+        for (Iterator i = ENTRIES.values().iterator(); (size > capacity)
+                && i.hasNext();) {
+            ByteBuffer buffer = (ByteBuffer) i.next();
+            i.remove();
+            size -= buffer.capacity();
+            EVICTIONS.increment();
+        }
+    }
+}
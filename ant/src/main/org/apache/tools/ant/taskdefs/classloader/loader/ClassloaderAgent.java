@@ -0,0 +1,73 @@
+/*
+ * Copyright  2005 The Apache Software Foundation
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.tools.ant.taskdefs.classloader.loader;
+
+import java.lang.instrument.Instrumentation;
+import java.lang.reflect.Method;
+
+/**
+ * Java agent, that gives the classloader report access to the
+ * instrumentation of the running JVM. Start the JVM with
+ * <code>-javaagent:ant-classloadertask.jar</code> to get class counts for
+ * classloaders, that don't keep their own statistics.
+ * @since Ant 1.7
+ */
+public final class ClassloaderAgent {
+    private static volatile Instrumentation instrumentation = null;
+    private ClassloaderAgent() {
+    }
+    /**
+     * Entry point if the agent is loaded on JVM startup.
+     * @param args The agent arguments.
+     * @param inst The instrumentation.
+     */
+    public static void premain(String args, Instrumentation inst) {
+        instrumentation = inst;
+    }
+    /**
+     * Entry point if the agent is loaded into a running JVM.
+     * @param args The agent arguments.
+     * @param inst The instrumentation.
+     */
+    public static void agentmain(String args, Instrumentation inst) {
+        instrumentation = inst;
+    }
+    /**
+     * Gets the instrumentation. The agent is loaded by the system
+     * classloader, which might not be the loader of this class, so the
+     * system classloader's copy of this class is asked as well.
+     * @return The instrumentation or null if the agent is not loaded.
+     */
+    public static Instrumentation getInstrumentation() {
+        if (instrumentation != null) {
+            return instrumentation;
+        }
+        try {
+            Class agent = ClassLoader.getSystemClassLoader().loadClass(
+                    ClassloaderAgent.class.getName());
+            if (agent == ClassloaderAgent.class) {
+                return null;
+            }
+            Method m = agent.getMethod("getInstrumentation", new Class[0]);
+            return (Instrumentation) m.invoke(null, new Object[0]);
+        } catch (Exception e) {
+            return null;
+        } catch (LinkageError e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,322 @@
+/*
+ * Copyright  2005 The Apache Software Foundation
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.tools.ant.taskdefs.classloader.loader;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * An in-memory listing of the files below a classpath directory, so
+ * finding a file is a map probe instead of a file system call. The listing
+ * is built once by a parallel walk of the tree and kept current with a
+ * <code>WatchService</code>: the pending change events are applied before
+ * each lookup. As the events arrive asynchronously - a polling watch
+ * service reports them seconds later -, a file missing from a listed
+ * directory is looked up in the file system, so files a recompile creates
+ * in an existing package are found at once. A file of a directory, that is
+ * not listed, is not looked up: most lookups are for packages the tree
+ * doesn't have, and they stay map probes. A new directory is seen, when
+ * its creation is reported. If the tree can't be watched, all lookups fall
+ * back to the file system.
+ * <p>
+ * The watch service is shared by all indexes, so several indexes over the
+ * same directory share its WatchKey; it is cancelled, when the last of them
+ * is closed.
+ * </p>
+ * @since Ant 1.7
+ */
+public final class DirectoryIndex {
+    /**
+     * A watched directory of an index.
+     */
+    private static final class Watched {
+        private final Path dir;
+        private final DirectoryIndex index;
+        private final String prefix;
+        private Watched(DirectoryIndex index, Path dir, String prefix) {
+            this.index = index;
+            this.dir = dir;
+            this.prefix = prefix;
+        }
+    }
+    /**
+     * Lists a directory, forking a walk for each subdirectory.
+     */
+    private final class Walk extends RecursiveAction {
+        private final Path dir;
+        private final String prefix;
+        private Walk(Path dir, String prefix) {
+            this.dir = dir;
+            this.prefix = prefix;
+        }
+        protected void compute() {
+            // watched before listed, so no file created meanwhile is missed.
+            watch(dir, prefix);
+            dirs.add(prefix);
+            ArrayList walks = new ArrayList();
+            try {
+                DirectoryStream children = Files.newDirectoryStream(dir);
+                try {
+                    for (Iterator i = children.iterator(); i.hasNext();) {
+                        Path child = (Path) i.next();
+                        String name = prefix + child.getFileName();
+                        if (Files.isDirectory(child)) {
+                            walks.add(new Walk(child, name + "/"));
+                        } else {
+                            files.add(name);
+                        }
+                    }
+                } finally {
+                    children.close();
+                }
+            } catch (IOException e) {
+                // vanished or unreadable; the lookups can't be trusted.
+                watched = false;
+            }
+            invokeAll(walks);
+        }
+    }
+    // maps a WatchKey to the list of its Watched directories, one per index.
+    private static final HashMap KEYS = new HashMap();
+    // serializes applying the change events.
+    private static final Object SYNC = new Object();
+    private static volatile WatchService watcher = null;
+    private static boolean watcherFailed = false;
+    // the listed directories, "" or ending with '/'.
+    private final Set dirs = ConcurrentHashMap.newKeySet();
+    private final Set files = ConcurrentHashMap.newKeySet();
+    private final ArrayList keys = new ArrayList();
+    private final File root;
+    private volatile boolean watched = true;
+    /**
+     * Constructor, walks the directory tree.
+     * @param root The directory.
+     */
+    public DirectoryIndex(File root) {
+        this.root = root;
+        walk(root.toPath(), "");
+    }
+    /**
+     * Stops watching the directory tree.
+     */
+    public void close() {
+        synchronized (KEYS) {
+            for (int i = 0; i < keys.size(); i++) {
+                WatchKey key = (WatchKey) keys.get(i);
+                ArrayList all = (ArrayList) KEYS.get(key);
+                if (all != null) {
+                    for (Iterator j = all.iterator(); j.hasNext();) {
+                        if (((Watched) j.next()).index == this) {
+                            j.remove();
+                        }
+                    }
+                    if (!all.isEmpty()) {
+                        // still watched for another index.
+                        continue;
+                    }
+                    KEYS.remove(key);
+                }
+                key.cancel();
+            }
+            keys.clear();
+            watched = false;
+        }
+    }
+    /**
+     * Checks whether the directory tree contains a file. A file, that is
+     * not in the listing, but whose directory is, is looked up in the file
+     * system, as its creation might not be reported yet; a file deleted,
+     * but not yet reported, is still contained.
+     * @param name The name of the file relative to the directory, separated
+     *     by '/'.
+     * @return True, if the file exists.
+     */
+    public boolean contains(String name) {
+        if (watched) {
+            sync();
+        }
+        if (watched) {
+            if (files.contains(name)) {
+                return true;
+            }
+            if (!dirs.contains(name.substring(0, name.lastIndexOf('/') + 1))) {
+                // a package the tree doesn't have.
+                return false;
+            }
+        }
+        return new File(root, name.replace('/', File.separatorChar)).isFile();
+    }
+    /**
+     * Gets a file of the directory tree.
+     * @param name The name of the file relative to the directory, separated
+     *     by '/'.
+     * @return The file or null, if it does not exist.
+     */
+    public File getFile(String name) {
+        return contains(name) ? new File(root,
+                name.replace('/', File.separatorChar)) : null;
+    }
+    /**
+     * Gets the directory.
+     * @return The directory.
+     */
+    public File getRoot() {
+        return root;
+    }
+    /**
+     * Gets the number of files in the directory tree.
+     * @return The number of files.
+     */
+    public int size() {
+        sync();
+        return files.size();
+    }
+    /**
+     * Checks whether the directory tree is watched.
+     * @return True, if lookups are map probes, false if they fall back to
+     *     the file system.
+     */
+    public boolean isWatched() {
+        return watched;
+    }
+    private static WatchService getWatcher() {
+        synchronized (KEYS) {
+            if ((watcher == null) && !watcherFailed) {
+                try {
+                    watcher = FileSystems.getDefault().newWatchService();
+                } catch (IOException e) {
+                    watcherFailed = true;
+                } catch (UnsupportedOperationException e) {
+                    watcherFailed = true;
+                }
+            }
+            return watcher;
+        }
+    }
+    private void handle(Watched w, WatchEvent event) {
+        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+            rebuild();
+            return;
+        }
+        Path child = w.dir.resolve((Path) event.context());
+        String name = w.prefix + child.getFileName();
+        if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+            if (Files.isDirectory(child)) {
+                walk(child, name + "/");
+            } else {
+                files.add(name);
+            }
+        } else if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+            files.remove(name);
+            String dir = name + "/";
+            for (Iterator i = files.iterator(); i.hasNext();) {
+                if (((String) i.next()).startsWith(dir)) {
+                    i.remove();
+                }
+            }
+            for (Iterator i = dirs.iterator(); i.hasNext();) {
+                if (((String) i.next()).startsWith(dir)) {
+                    i.remove();
+                }
+            }
+        }
+    }
+    private void rebuild() {
+        close();
+        dirs.clear();
+        files.clear();
+        watched = true;
+        walk(root.toPath(), "");
+    }
+    /**
+     * Applies the pending change events to their indexes.
+     */
+    private static void sync() {
+        WatchService ws = watcher;
+        // the common case - nothing changed - takes no lock.
+        WatchKey key = (ws == null) ? null : ws.poll();
+        if (key == null) {
+            return;
+        }
+        synchronized (SYNC) {
+            for (; key != null; key = ws.poll()) {
+                Object[] all;
+                synchronized (KEYS) {
+                    ArrayList watchers = (ArrayList) KEYS.get(key);
+                    all = (watchers == null) ? new Object[0]
+                            : watchers.toArray();
+                }
+                Iterator events = key.pollEvents().iterator();
+                while (events.hasNext()) {
+                    WatchEvent event = (WatchEvent) events.next();
+                    for (int i = 0; i < all.length; i++) {
+                        Watched w = (Watched) all[i];
+                        w.index.handle(w, event);
+                    }
+                }
+                if (!key.reset()) {
+                    synchronized (KEYS) {
+                        KEYS.remove(key);
+                    }
+                }
+            }
+        }
+    }
+    private void walk(Path dir, String prefix) {
+        ForkJoinPool.commonPool().invoke(new Walk(dir, prefix));
+    }
+    private void watch(Path dir, String prefix) {
+        WatchService ws = getWatcher();
+        if (ws == null) {
+            watched = false;
+            return;
+        }
+        try {
+            WatchKey key = dir.register(ws, new WatchEvent.Kind[] {
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE});
+            synchronized (KEYS) {
+                // the key of a directory watched for another index.
+                ArrayList all = (ArrayList) KEYS.get(key);
+                if (all == null) {
+                    all = new ArrayList();
+                    KEYS.put(key, all);
+                }
+                all.add(new Watched(this, dir, prefix));
+                keys.add(key);
+            }
+        } catch (IOException e) {
+            // e.g. the limit of watches is reached.
+            watched = false;
+        }
+    }
+}
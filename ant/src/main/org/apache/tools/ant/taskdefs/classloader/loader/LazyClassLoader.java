@@ -0,0 +1,144 @@
+/*
+ * Copyright  2005 The Apache Software Foundation
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.tools.ant.taskdefs.classloader.loader;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Enumeration;
+
+import org.apache.tools.ant.BuildException;
+
+/**
+ * A placeholder for a classloader, that is created on first use.
+ * All classes and resources are loaded by the created classloader;
+ * the placeholder itself never defines a class.
+ * @since Ant 1.7
+ */
+public class LazyClassLoader extends ClassLoader {
+    /**
+     * Creates the classloader on first use.
+     */
+    public static interface Factory {
+        /**
+         * Creates the classloader.
+         * @return The classloader or null if it could not be created.
+         */
+        ClassLoader createClassLoader();
+    }
+    private Factory factory;
+    private RuntimeException failure = null;
+    private volatile ClassLoader loader = null;
+    private final Object lock = new Object();
+    private final String name;
+    /**
+     * Constructor.
+     * @param name The name of the classloader.
+     * @param factory The factory to create the classloader with.
+     */
+    public LazyClassLoader(String name, Factory factory) {
+        super(null);
+        this.name = name;
+        this.factory = factory;
+    }
+    /**
+     * Gets the classloader, creating it if necessary. Only one thread
+     * creates the classloader; if its creation failed, the failure is
+     * thrown again on every call.
+     * @return The classloader.
+     */
+    public ClassLoader getLoader() {
+        ClassLoader result = loader;
+        if (result != null) {
+            return result;
+        }
+        synchronized (lock) {
+            if (loader == null) {
+                if (failure != null) {
+                    throw failure;
+                }
+                try {
+                    result = factory.createClassLoader();
+                    if (result == null) {
+                        throw new BuildException("unable to create "
+                                + "classloader " + name);
+                    }
+                } catch (RuntimeException e) {
+                    failure = e;
+                    throw e;
+                }
+                loader = result;
+                factory = null;
+            }
+            return loader;
+        }
+    }
+    /**
+     * Gets the resource of the created classloader.
+     * @param resName The name of the resource.
+     * @return The resource or null if not found.
+     */
+    public URL getResource(String resName) {
+        return getLoader().getResource(resName);
+    }
+    /**
+     * Gets the resources of the created classloader.
+     * @param resName The name of the resources.
+     * @return The resources.
+     * @throws IOException if an I/O error occurs.
+     */
+    public Enumeration getResources(String resName) throws IOException {
+        return getLoader().getResources(resName);
+    }
+    /**
+     * Indicates whether the classloader has been created.
+     * @return True, if the classloader has been created.
+     */
+    public boolean isCreated() {
+        return loader != null;
+    }
+    /**
+     * Loads a class by the created classloader.
+     * @param className The name of the class.
+     * @param resolve True, if the class should be resolved.
+     * @return The class.
+     * @throws ClassNotFoundException if the class can't be found or the
+     *     classloader can't be created.
+     */
+    protected Class loadClass(String className, boolean resolve)
+            throws ClassNotFoundException {
+        ClassLoader cl;
+        try {
+            cl = getLoader();
+        } catch (RuntimeException e) {
+            throw new ClassNotFoundException(className, e);
+        }
+        Class result = cl.loadClass(className);
+        if (resolve) {
+            resolveClass(result);
+        }
+        return result;
+    }
+    /**
+     * Gets a description of this classloader.
+     * @return The description.
+     */
+    public String toString() {
+        ClassLoader cl = loader;
+        return "LazyClassLoader[" + name + ", "
+                + ((cl == null) ? "not created" : cl.toString()) + "]";
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright  2005 The Apache Software Foundation
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.tools.ant.taskdefs.classloader.loader;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.tools.ant.loader.AntClassLoader2;
+import org.apache.tools.ant.taskdefs.classloader.ClassLoaderStatistics;
+
+/**
+ * An AntClassLoader, that keeps statistics about the classes it defines.
+ * @since Ant 1.7
+ */
+public class ManagedAntClassLoader extends AntClassLoader2 implements
+        ClassLoaderStatistics.Source {
+    private final ClassLoaderStatistics statistics = new ClassLoaderStatistics();
+    /**
+     * Default constructor.
+     */
+    public ManagedAntClassLoader() {
+    }
+    /**
+     * Defines a class from its bytecode.
+     * @param container The file the class was read from.
+     * @param classData The bytecode.
+     * @param classname The name of the class.
+     * @return The defined class.
+     * @throws IOException if the class can't be defined.
+     */
+    protected Class defineClassFromData(File container, byte[] classData,
+            String classname) throws IOException {
+        Class result = super.defineClassFromData(container, classData,
+                classname);
+        statistics.classDefined(classData.length);
+        return result;
+    }
+    /**
+     * Finds and defines a class.
+     * @param name The name of the class.
+     * @return The class.
+     * @throws ClassNotFoundException if the class can't be found.
+     */
+    public Class findClass(String name) throws ClassNotFoundException {
+        long start = System.nanoTime();
+        boolean found = false;
+        try {
+            Class result = super.findClass(name);
+            found = true;
+            return result;
+        } finally {
+            statistics.findClass(System.nanoTime() - start, found);
+        }
+    }
+    /**
+     * Gets the statistics of this classloader.
+     * @return The statistics.
+     */
+    public ClassLoaderStatistics getStatistics() {
+        return statistics;
+    }
+}
@@ -0,0 +1,613 @@
+/*
+ * Copyright  2005 The Apache Software Foundation
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.tools.ant.taskdefs.classloader.loader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.security.CodeSigner;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.StringTokenizer;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+
+import org.apache.tools.ant.taskdefs.classloader.ClassLoaderStatistics;
+
+/**
+ * A URLClassLoader, that keeps statistics about the classes it defines.
+ * <p>
+ * Local jar files are read through {@link SharedJarFiles}, so a jar file
+ * included by several of these classloaders is opened once. Local
+ * directories are looked up in a {@link DirectoryIndex}, in-memory entries
+ * in their {@link MemoryClassPath.Store}. Every other
+ * classpath entry is read by a URLClassLoader of its own. The entries are
+ * searched in classpath order; the shared jar files are released when the
+ * classloader is closed.
+ * </p>
+ * <p>
+ * As with URLClassLoader, the <code>Class-Path</code> manifest entries of a
+ * jar file are searched right after it, on Java 9 and later multi-release
+ * jar files are read for the running Java version, packages are defined
+ * from the manifest and checked for sealing, and the resources of a jar
+ * file are <code>jar:</code> URLs opening a JarURLConnection.
+ * </p>
+ * @since Ant 1.7
+ */
+public class ManagedURLClassLoader extends URLClassLoader implements
+        ClassLoaderStatistics.Source {
+    /**
+     * A connection to an entry of a shared jar file.
+     */
+    private static final class JarConnection extends JarURLConnection {
+        private JarEntry entry = null;
+        private final SharedJarFiles.Handle handle;
+        private JarConnection(URL u, SharedJarFiles.Handle handle)
+                throws MalformedURLException {
+            super(u);
+            this.handle = handle;
+        }
+        public void connect() throws IOException {
+            if (connected) {
+                return;
+            }
+            if (getEntryName() != null) {
+                entry = handle.getJarFile().getJarEntry(getEntryName());
+                if (entry == null) {
+                    throw new FileNotFoundException("JAR entry "
+                            + getEntryName() + " not found in "
+                            + handle.getFile());
+                }
+            }
+            connected = true;
+        }
+        public int getContentLength() {
+            long result = getContentLengthLong();
+            return (result > Integer.MAX_VALUE) ? -1 : (int) result;
+        }
+        public long getContentLengthLong() {
+            try {
+                connect();
+            } catch (IOException e) {
+                return -1;
+            }
+            return (entry == null) ? handle.getFile().length()
+                    : entry.getSize();
+        }
+        public String getContentType() {
+            String result = (getEntryName() == null) ? "x-java/jar"
+                    : guessContentTypeFromName(getEntryName());
+            return (result == null) ? "content/unknown" : result;
+        }
+        public InputStream getInputStream() throws IOException {
+            connect();
+            if (entry == null) {
+                throw new IOException("no entry name specified");
+            }
+            return handle.getJarFile().getInputStream(entry);
+        }
+        public JarEntry getJarEntry() throws IOException {
+            connect();
+            return entry;
+        }
+        /**
+         * Gets the shared jar file, which must not be closed.
+         * @return The jar file.
+         * @throws IOException if the entry does not exist.
+         */
+        public JarFile getJarFile() throws IOException {
+            connect();
+            return handle.getJarFile();
+        }
+    }
+    /**
+     * Reads the entries of a shared jar file.
+     */
+    private static final class JarHandler extends URLStreamHandler {
+        private final SharedJarFiles.Handle handle;
+        private final URL url;
+        private JarHandler(URL url, SharedJarFiles.Handle handle) {
+            this.url = url;
+            this.handle = handle;
+        }
+        protected URLConnection openConnection(URL u) throws IOException {
+            return new JarConnection(u, handle);
+        }
+        protected void parseURL(URL u, String spec, int start, int limit) {
+            String file = u.getFile();
+            int sep = (file == null) ? -1 : file.indexOf("!/");
+            if ((sep >= 0) && (start < limit) && (spec.charAt(start) == '/')) {
+                // relative to the root of the jar file.
+                setURL(u, "jar", "", -1, null, null, file.substring(0, sep + 1)
+                        + spec.substring(start, limit), null, null);
+                return;
+            }
+            super.parseURL(u, spec, start, limit);
+        }
+    }
+    /**
+     * Reads the files of an indexed directory.
+     */
+    private static final class DirectoryHandler {
+        private final DirectoryIndex index;
+        private final URL url;
+        private DirectoryHandler(URL url, DirectoryIndex index) {
+            this.url = url;
+            this.index = index;
+        }
+    }
+    /**
+     * Reads the entries of an in-memory store.
+     */
+    private static final class MemoryHandler {
+        private final MemoryClassPath.Store store;
+        private final URL url;
+        private MemoryHandler(URL url, MemoryClassPath.Store store) {
+            this.url = url;
+            this.store = store;
+        }
+    }
+    private boolean closed = false;
+    // per classpath entry a JarHandler, a DirectoryHandler, a
+    // MemoryHandler or a URLClassLoader.
+    private final ArrayList entries = new ArrayList();
+    // the entries, including the ones of Class-Path manifest attributes.
+    private final HashSet entryURLs = new HashSet();
+    private final ClassLoaderStatistics statistics =
+            new ClassLoaderStatistics();
+    private final ArrayList urls = new ArrayList();
+    /**
+     * Constructor.
+     * @param urls The classpath.
+     * @param parent The parent classloader.
+     */
+    public ManagedURLClassLoader(URL[] urls, ClassLoader parent) {
+        super(new URL[0], parent);
+        for (int i = 0; i < urls.length; i++) {
+            addURL(urls[i]);
+        }
+    }
+    /**
+     * Appends a classpath entry. Public, so the entry can be appended
+     * without reflective access to URLClassLoader.
+     * @param url The entry.
+     */
+    public synchronized void addURL(URL url) {
+        if (closed) {
+            return;
+        }
+        urls.add(url);
+        addEntry(url);
+    }
+    private void addClassPath(JarHandler h) {
+        Manifest man;
+        try {
+            man = h.handle.getJarFile().getManifest();
+        } catch (IOException e) {
+            return;
+        }
+        String cp = (man == null) ? null : man.getMainAttributes().getValue(
+                Attributes.Name.CLASS_PATH);
+        if (cp == null) {
+            return;
+        }
+        StringTokenizer st = new StringTokenizer(cp);
+        while (st.hasMoreTokens()) {
+            try {
+                URL entry = new URL(h.url, st.nextToken());
+                // missing local entries are skipped, as by URLClassLoader.
+                if (!"file".equals(entry.getProtocol())
+                        || (getLocalFile(entry) != null)) {
+                    addEntry(entry);
+                }
+            } catch (MalformedURLException e) {
+                // skipped, as by URLClassLoader.
+            }
+        }
+    }
+    private void addEntry(URL url) {
+        // searched once, however often it is included.
+        if (!entryURLs.add(url.toString())) {
+            return;
+        }
+        Object entry = null;
+        File file = getLocalFile(url);
+        MemoryClassPath.Store store = MemoryClassPath.getStore(url);
+        if (store != null) {
+            entry = new MemoryHandler(url, store);
+        } else if ((file != null) && file.isDirectory()) {
+            entry = new DirectoryHandler(url, new DirectoryIndex(file));
+        } else if (file != null) {
+            try {
+                entry = new JarHandler(url, SharedJarFiles.acquire(file));
+            } catch (IOException e) {
+                // not a jar file; reported by the URLClassLoader.
+            }
+        }
+        if (entry == null) {
+            entry = new URLClassLoader(new URL[] {url}, null);
+        }
+        entries.add(entry);
+        if (entry instanceof JarHandler) {
+            addClassPath((JarHandler) entry);
+        }
+    }
+    /**
+     * Closes this classloader and releases the shared jar files.
+     * @throws IOException if a classpath entry can't be closed.
+     */
+    public void close() throws IOException {
+        Object[] all;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            all = entries.toArray();
+            entries.clear();
+        }
+        IOException failure = null;
+        for (int i = 0; i < all.length; i++) {
+            try {
+                if (all[i] instanceof JarHandler) {
+                    SharedJarFiles.release(((JarHandler) all[i]).handle);
+                } else if (all[i] instanceof DirectoryHandler) {
+                    ((DirectoryHandler) all[i]).index.close();
+                } else if (!(all[i] instanceof MemoryHandler)) {
+                    ((URLClassLoader) all[i]).close();
+                }
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        super.close();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+    private void defineClassPackage(String className, Manifest man,
+            URL url) {
+        int dot = className.lastIndexOf('.');
+        if (dot < 0) {
+            return;
+        }
+        String pkg = className.substring(0, dot);
+        Package p = getPackage(pkg);
+        if (p == null) {
+            try {
+                if (man == null) {
+                    definePackage(pkg, null, null, null, null, null, null,
+                            null);
+                } else {
+                    definePackage(pkg, man, url);
+                }
+                return;
+            } catch (IllegalArgumentException e) {
+                // defined concurrently.
+                p = getPackage(pkg);
+            }
+        }
+        // sealing is checked as by URLClassLoader.
+        if (p == null) {
+            return;
+        }
+        if (p.isSealed()) {
+            if (!p.isSealed(url)) {
+                throw new SecurityException("sealing violation: package "
+                        + pkg + " is sealed");
+            }
+        } else if ((man != null) && isSealed(pkg, man)) {
+            throw new SecurityException("sealing violation: can't seal "
+                    + "package " + pkg + ": already loaded");
+        }
+    }
+    private static boolean isSealed(String pkg, Manifest man) {
+        Attributes attr = man.getAttributes(pkg.replace('.', '/') + "/");
+        String sealed = (attr == null) ? null
+                : attr.getValue(Attributes.Name.SEALED);
+        if (sealed == null) {
+            sealed = man.getMainAttributes().getValue(
+                    Attributes.Name.SEALED);
+        }
+        return "true".equalsIgnoreCase(sealed);
+    }
+    /**
+     * Finds and defines a class.
+     * @param name The name of the class.
+     * @return The class.
+     * @throws ClassNotFoundException if the class can't be found.
+     */
+    protected Class findClass(String name) throws ClassNotFoundException {
+        long start = System.nanoTime();
+        boolean found = false;
+        try {
+            Class result = findEntryClass(name);
+            found = true;
+            return result;
+        } finally {
+            statistics.findClass(System.nanoTime() - start, found);
+        }
+    }
+    private Class findEntryClass(String name) throws ClassNotFoundException {
+        String path = name.replace('.', '/') + ".class";
+        Object[] all = getEntries();
+        for (int i = 0; i < all.length; i++) {
+            URL url = getURL(all[i]);
+            try {
+                byte[] data;
+                CodeSigner[] signers = null;
+                if (all[i] instanceof JarHandler) {
+                    SharedJarFiles.Handle h = ((JarHandler) all[i]).handle;
+                    JarFile jar = h.getJarFile();
+                    JarEntry entry = jar.getJarEntry(path);
+                    if (entry == null) {
+                        continue;
+                    }
+                    data = readCached(h, entry);
+                    signers = entry.getCodeSigners();
+                    defineClassPackage(name, jar.getManifest(), url);
+                } else if (all[i] instanceof MemoryHandler) {
+                    data = ((MemoryHandler) all[i]).store.get(path);
+                    if (data == null) {
+                        continue;
+                    }
+                    defineClassPackage(name, null, url);
+                } else if (all[i] instanceof DirectoryHandler) {
+                    File f = ((DirectoryHandler) all[i]).index.getFile(path);
+                    if (f == null) {
+                        continue;
+                    }
+                    try {
+                        data = readFully(new FileInputStream(f));
+                    } catch (FileNotFoundException e) {
+                        // deleted, but not yet reported to the index.
+                        continue;
+                    }
+                    defineClassPackage(name, null, url);
+                } else {
+                    URL res = ((URLClassLoader) all[i]).findResource(path);
+                    if (res == null) {
+                        continue;
+                    }
+                    URLConnection con = res.openConnection();
+                    data = readFully(con.getInputStream());
+                    Manifest man = null;
+                    if (con instanceof JarURLConnection) {
+                        // e.g. a remote jar file; its entry's signers are
+                        // known, once the entry has been read.
+                        JarURLConnection jar = (JarURLConnection) con;
+                        man = jar.getManifest();
+                        JarEntry entry = jar.getJarEntry();
+                        signers = (entry == null) ? null
+                                : entry.getCodeSigners();
+                    }
+                    defineClassPackage(name, man, url);
+                }
+                Class result = defineClass(name, data, 0, data.length,
+                        new CodeSource(url, signers));
+                statistics.classDefined(data.length);
+                return result;
+            } catch (IOException e) {
+                throw new ClassNotFoundException(name, e);
+            }
+        }
+        throw new ClassNotFoundException(name);
+    }
+    /**
+     * Finds a resource in the classpath.
+     * @param name The name of the resource.
+     * @return The resource or null if not found.
+     */
+    public URL findResource(String name) {
+        Object[] all = getEntries();
+        for (int i = 0; i < all.length; i++) {
+            URL result = findResource(all[i], name);
+            if (result != null) {
+                return result;
+            }
+        }
+        return null;
+    }
+    private URL findResource(Object entry, String name) {
+        if (entry instanceof MemoryHandler) {
+            return ((MemoryHandler) entry).store.getURL(name);
+        }
+        if (entry instanceof DirectoryHandler) {
+            File f = ((DirectoryHandler) entry).index.getFile(name);
+            try {
+                // the index might not know of a deletion yet.
+                return ((f == null) || !f.isFile()) ? null
+                        : f.toURI().toURL();
+            } catch (MalformedURLException e) {
+                return null;
+            }
+        }
+        if (!(entry instanceof JarHandler)) {
+            return ((URLClassLoader) entry).findResource(name);
+        }
+        JarHandler h = (JarHandler) entry;
+        if (h.handle.getJarFile().getJarEntry(name) == null) {
+            return null;
+        }
+        try {
+            return new URL("jar", "", -1, h.url + "!/" + encode(name), h);
+        } catch (MalformedURLException e) {
+            return null;
+        }
+    }
+    private static String encode(String name) {
+        // JarURLConnection decodes the entry name.
+        StringBuffer result = new StringBuffer(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c == '%') {
+                result.append("%25");
+            } else if (c == ' ') {
+                result.append("%20");
+            } else {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+    /**
+     * Gets a resource as stream. Unlike URLClassLoader, this classloader
+     * does not close the jar files of the streams, as they are shared.
+     * @param name The name of the resource.
+     * @return The stream or null if the resource is not found.
+     */
+    public InputStream getResourceAsStream(String name) {
+        URL url = getResource(name);
+        try {
+            return (url == null) ? null : url.openStream();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+    /**
+     * Finds all resources of a name in the classpath.
+     * @param name The name of the resources.
+     * @return The resources.
+     */
+    public Enumeration findResources(String name) {
+        ArrayList result = new ArrayList();
+        Object[] all = getEntries();
+        for (int i = 0; i < all.length; i++) {
+            URL url = findResource(all[i], name);
+            if (url != null) {
+                result.add(url);
+            }
+        }
+        return Collections.enumeration(result);
+    }
+    private synchronized Object[] getEntries() {
+        return entries.toArray();
+    }
+    private static URL getURL(Object entry) {
+        if (entry instanceof JarHandler) {
+            return ((JarHandler) entry).url;
+        }
+        if (entry instanceof DirectoryHandler) {
+            return ((DirectoryHandler) entry).url;
+        }
+        if (entry instanceof MemoryHandler) {
+            return ((MemoryHandler) entry).url;
+        }
+        return ((URLClassLoader) entry).getURLs()[0];
+    }
+    private static File getLocalFile(URL url) {
+        if (!"file".equals(url.getProtocol())) {
+            return null;
+        }
+        File file;
+        try {
+            file = new File(url.toURI());
+        } catch (URISyntaxException e) {
+            return null;
+        } catch (IllegalArgumentException e) {
+            // e.g. a UNC path with an authority.
+            return null;
+        }
+        return file.exists() ? file : null;
+    }
+    /**
+     * Gets the statistics of this classloader.
+     * @return The statistics.
+     */
+    public ClassLoaderStatistics getStatistics() {
+        return statistics;
+    }
+    /**
+     * Gets the classpath.
+     * @return The classpath entries.
+     */
+    public synchronized URL[] getURLs() {
+        return (URL[]) urls.toArray(new URL[urls.size()]);
+    }
+    /**
+     * Gets the number of jar files, this classloader holds open.
+     * @return The number of jar files.
+     */
+    public int getOpenJarFiles() {
+        Object[] all = getEntries();
+        int result = 0;
+        for (int i = 0; i < all.length; i++) {
+            if (all[i] instanceof JarHandler) {
+                result++;
+            }
+        }
+        return result;
+    }
+    /**
+     * Gets the number of jar files, this classloader shares with other
+     * classloaders.
+     * @return The number of jar files.
+     */
+    public int getSharedJarFiles() {
+        Object[] all = getEntries();
+        int result = 0;
+        for (int i = 0; i < all.length; i++) {
+            if ((all[i] instanceof JarHandler)
+                    && (((JarHandler) all[i]).handle.getReferences() > 1)) {
+                result++;
+            }
+        }
+        return result;
+    }
+    private byte[] readCached(SharedJarFiles.Handle h, JarEntry entry)
+            throws IOException {
+        // the signers of an entry are only known after reading it.
+        if (!ClassBytesCache.isEnabled() || h.isSigned()) {
+            return readFully(h.getJarFile().getInputStream(entry));
+        }
+        byte[] result = ClassBytesCache.get(h.getFingerprint(),
+                entry.getName());
+        statistics.classCacheLookup(result != null);
+        if (result == null) {
+            result = readFully(h.getJarFile().getInputStream(entry));
+            ClassBytesCache.put(h.getFingerprint(), entry.getName(), result);
+        }
+        return result;
+    }
+    private static byte[] readFully(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright  2005 The Apache Software Foundation
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.tools.ant.taskdefs.classloader.loader;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory classpath entries. A {@link Store} holds the bytes of classes
+ * and resources by their names, e.g. as generated by a compiler, and is
+ * denoted by an URL of the <code>antmem:</code> protocol. Classloaders
+ * created by the classloader task read the store directly; other users
+ * open the URLs of its entries through the handler of this class. No
+ * entry touches the disk.
+ * @since Ant 1.7
+ */
+public final class MemoryClassPath {
+    /**
+     * The protocol of in-memory classpath entries.
+     */
+    public static final String PROTOCOL = "antmem";
+    /**
+     * The bytes of classes and resources by their names.
+     */
+    public static final class Store {
+        private final ConcurrentHashMap entries = new ConcurrentHashMap();
+        private final String key;
+        private Store(String key) {
+            this.key = key;
+        }
+        /**
+         * Gets the bytes of an entry.
+         * @param name The name of the entry, separated by '/', e.g.
+         *     <code>org/example/Foo.class</code>.
+         * @return The bytes or null, if there is no such entry. The bytes
+         *     must not be modified.
+         */
+        public byte[] get(String name) {
+            return (byte[]) entries.get(name);
+        }
+        /**
+         * Gets the URL of an entry.
+         * @param name The name of the entry.
+         * @return The URL or null, if there is no such entry.
+         */
+        public URL getURL(String name) {
+            if (!entries.containsKey(name)) {
+                return null;
+            }
+            try {
+                return createURL(getURL() + name);
+            } catch (MalformedURLException e) {
+                return null;
+            }
+        }
+        /**
+         * Gets the URL denoting this store as classpath entry.
+         * @return The URL, <code>antmem://<i>key</i>/</code>.
+         */
+        public String getURL() {
+            return PROTOCOL + "://" + key + "/";
+        }
+        /**
+         * Adds or replaces an entry. A classloader, that already defined
+         * a class from the entry, keeps the class.
+         * @param name The name of the entry, separated by '/', e.g.
+         *     <code>org/example/Foo.class</code>.
+         * @param data The bytes, which are not copied.
+         */
+        public void put(String name, byte[] data) {
+            entries.put(name, data);
+        }
+        /**
+         * Removes an entry.
+         * @param name The name of the entry.
+         */
+        public void remove(String name) {
+            entries.remove(name);
+        }
+        /**
+         * Gets the number of entries.
+         * @return The number of entries.
+         */
+        public int size() {
+            return entries.size();
+        }
+    }
+    private static final URLStreamHandler HANDLER = new URLStreamHandler() {
+        protected URLConnection openConnection(URL u) throws IOException {
+            final Store store = getStore(u);
+            final String name = u.getPath().startsWith("/")
+                    ? u.getPath().substring(1) : u.getPath();
+            return new URLConnection(u) {
+                public void connect() throws IOException {
+                    if ((store == null) || (store.get(name) == null)) {
+                        throw new FileNotFoundException(url.toString());
+                    }
+                }
+                public InputStream getInputStream() throws IOException {
+                    connect();
+                    return new ByteArrayInputStream(store.get(name));
+                }
+                public long getContentLengthLong() {
+                    byte[] data = (store == null) ? null : store.get(name);
+                    return (data == null) ? -1 : data.length;
+                }
+            };
+        }
+        // the host is a store key; don't resolve it.
+        protected boolean equals(URL u1, URL u2) {
+            return u1.toExternalForm().equals(u2.toExternalForm());
+        }
+        protected int hashCode(URL u) {
+            return u.toExternalForm().hashCode();
+        }
+    };
+    private static int nextKey = 0;
+    // maps a key to a WeakReference of its Store, so a store, that is
+    // no longer referenced by a project or a classloader, is collected.
+    private static final HashMap STORES = new HashMap();
+    private MemoryClassPath() {
+    }
+    /**
+     * Creates an URL of the <code>antmem:</code> protocol, which needs no
+     * registered handler.
+     * @param spec The URL.
+     * @return The URL.
+     * @throws MalformedURLException if spec is no valid URL.
+     */
+    public static URL createURL(String spec) throws MalformedURLException {
+        return new URL(null, spec, HANDLER);
+    }
+    /**
+     * Gets the store denoted by an URL.
+     * @param url The URL of the store or one of its entries.
+     * @return The store or null, if the URL denotes no live store.
+     */
+    public static Store getStore(URL url) {
+        if (!PROTOCOL.equals(url.getProtocol())) {
+            return null;
+        }
+        synchronized (STORES) {
+            WeakReference ref = (WeakReference) STORES.get(url.getHost());
+            return (ref == null) ? null : (Store) ref.get();
+        }
+    }
+    /**
+     * Indicates whether a string is an URL of the <code>antmem:</code>
+     * protocol.
+     * @param spec The string.
+     * @return True, if spec starts with <code>antmem:</code>.
+     */
+    public static boolean isMemoryURL(String spec) {
+        return spec.startsWith(PROTOCOL + ":");
+    }
+    /**
+     * Creates a new, empty store.
+     * @return The store.
+     */
+    public static Store newStore() {
+        synchronized (STORES) {
+            for (Iterator i = STORES.values().iterator(); i.hasNext();) {
+                if (((WeakReference) i.next()).get() == null) {
+                    i.remove();
+                }
+            }
+            Store result = new Store("store" + (nextKey++));
+            STORES.put(result.key, new WeakReference(result));
+            return result;
+        }
+    }
+}
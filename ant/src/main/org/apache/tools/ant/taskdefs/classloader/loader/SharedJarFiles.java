@@ -0,0 +1,219 @@
+/*
+ * Copyright  2005 The Apache Software Foundation
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.tools.ant.taskdefs.classloader.loader;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.zip.ZipFile;
+
+/**
+ * A JVM wide cache of open jar files, shared by the classloaders created by
+ * the classloader task. A jar file is opened - and its central directory
+ * read - once, however many classloaders include it, and closed when the
+ * last classloader releases it. If a jar file is modified while it is open,
+ * the next classloader gets a newly opened jar file.
+ * @since Ant 1.7
+ */
+public final class SharedJarFiles {
+    /**
+     * A reference counted handle of an open jar file.
+     */
+    public static final class Handle {
+        private final File file;
+        private String fingerprint = null;
+        private final JarFile jarFile;
+        private final long lastModified;
+        private final long length;
+        private int references = 0;
+        private boolean signed = false;
+        private Handle(File file) throws IOException {
+            this.file = file;
+            this.lastModified = file.lastModified();
+            this.length = file.length();
+            this.jarFile = open(file);
+        }
+        /**
+         * Gets the file.
+         * @return The canonical file.
+         */
+        public File getFile() {
+            return file;
+        }
+        /**
+         * Gets the content fingerprint of the jar file. It is computed from
+         * the names, sizes and checksums of the entries in the central
+         * directory, so no entry needs to be inflated.
+         * @return The fingerprint.
+         */
+        public synchronized String getFingerprint() {
+            if (fingerprint == null) {
+                MessageDigest digest;
+                try {
+                    digest = MessageDigest.getInstance("SHA-256");
+                } catch (NoSuchAlgorithmException e) {
+                    // required of every JVM.
+                    throw new IllegalStateException(e.toString());
+                }
+                for (Enumeration e = jarFile.entries(); e.hasMoreElements();) {
+                    JarEntry entry = (JarEntry) e.nextElement();
+                    String name = entry.getName();
+                    digest.update((name + "\0" + entry.getSize() + "\0"
+                            + entry.getCrc() + "\0").getBytes());
+                    if (name.startsWith("META-INF/") && name.endsWith(".SF")) {
+                        signed = true;
+                    }
+                }
+                fingerprint = new BigInteger(1, digest.digest()).toString(16);
+            }
+            return fingerprint;
+        }
+        /**
+         * Gets the open jar file. On Java 9 and later, entries of a
+         * multi-release jar file are looked up for the running Java
+         * version. The jar file is shared and must not be closed.
+         * @return The jar file.
+         */
+        public JarFile getJarFile() {
+            return jarFile;
+        }
+        /**
+         * Gets the number of classloaders, that currently use the handle.
+         * @return The number of references.
+         */
+        public int getReferences() {
+            synchronized (OPEN) {
+                return references;
+            }
+        }
+        /**
+         * Checks whether the jar file is signed.
+         * @return True, if the jar file contains a signature file.
+         */
+        public synchronized boolean isSigned() {
+            getFingerprint();
+            return signed;
+        }
+        private boolean isCurrent() {
+            return (file.lastModified() == lastModified)
+                    && (file.length() == length);
+        }
+    }
+    private static final HashMap OPEN = new HashMap();
+    // JarFile(File, boolean, int, Runtime.Version) and the running version,
+    // null before Java 9.
+    private static final Constructor VERSIONED;
+    private static final Object VERSION;
+    static {
+        Constructor versioned = null;
+        Object version = null;
+        try {
+            Class versionClass = Class.forName("java.lang.Runtime$Version");
+            version = Runtime.class.getMethod("version", new Class[0])
+                    .invoke(null, new Object[0]);
+            versioned = JarFile.class.getConstructor(new Class[] {File.class,
+                    Boolean.TYPE, Integer.TYPE, versionClass});
+        } catch (Exception e) {
+            // before Java 9, jar files are not versioned.
+            versioned = null;
+        }
+        VERSIONED = versioned;
+        VERSION = version;
+    }
+    private SharedJarFiles() {
+    }
+    /**
+     * Opens a jar file for reading, versioned like the jar files of the
+     * JDK's URLClassLoader, if the running Java version supports it.
+     */
+    private static JarFile open(File file) throws IOException {
+        if (VERSIONED == null) {
+            return new JarFile(file, true, ZipFile.OPEN_READ);
+        }
+        try {
+            return (JarFile) VERSIONED.newInstance(new Object[] {file,
+                    Boolean.TRUE, Integer.valueOf(ZipFile.OPEN_READ),
+                    VERSION});
+        } catch (InvocationTargetException e) {
+            Throwable t = e.getTargetException();
+            if (t instanceof IOException) {
+                throw (IOException) t;
+            }
+            if (t instanceof RuntimeException) {
+                throw (RuntimeException) t;
+            }
+            throw new IOException(t.toString());
+        } catch (Exception e) {
+            // not accessible, read unversioned.
+            return new JarFile(file, true, ZipFile.OPEN_READ);
+        }
+    }
+    /**
+     * Acquires a handle of a jar file, opening the jar file if necessary.
+     * Each acquired handle must be released exactly once.
+     * @param file The jar file.
+     * @return The handle.
+     * @throws IOException if the jar file can't be opened.
+     */
+    public static Handle acquire(File file) throws IOException {
+        File key = file.getCanonicalFile();
+        synchronized (OPEN) {
+            Handle h = (Handle) OPEN.get(key);
+            if ((h == null) || !h.isCurrent()) {
+                // a modified jar file stays open for its current users.
+                h = new Handle(key);
+                OPEN.put(key, h);
+            }
+            h.references++;
+            return h;
+        }
+    }
+    /**
+     * Gets the number of open jar files.
+     * @return The number of jar files.
+     */
+    public static int getOpenCount() {
+        synchronized (OPEN) {
+            return OPEN.size();
+        }
+    }
+    /**
+     * Releases a handle, closing the jar file if it has been the last
+     * reference.
+     * @param h The handle.
+     * @throws IOException if the jar file can't be closed.
+     */
+    public static void release(Handle h) throws IOException {
+        synchronized (OPEN) {
+            if (--h.references > 0) {
+                return;
+            }
+            if (OPEN.get(h.file) == h) {
+                OPEN.remove(h.file);
+            }
+        }
+        h.jarFile.close();
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright  2005 The Apache Software Foundation
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.tools.ant.taskdefs.classloader.report;
+
+import java.util.LinkedList;
+
+/**
+ * Forwards the reported elements to another reporter on a background
+ * thread, so formatting and output do not block the reporting thread.
+ * The events are passed through a bounded queue; if the writer falls
+ * behind, the reporting thread waits until there is room again.
+ * <code>endReport</code> waits until all events are written. A failure
+ * of the writer thread is rethrown on the reporting thread.
+ * @since Ant1.7
+ */
+public class AsyncReporter extends ClassloaderReportEvent.Recorder {
+    /**
+     * Default number of events that may be queued.
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+    private final int capacity;
+    private boolean closed = false;
+    private final ClassloaderReporter delegate;
+    private Throwable failure = null;
+    private final LinkedList queue = new LinkedList();
+    private Thread writer = null;
+    /**
+     * Constructor.
+     * @param delegate The reporter to write to.
+     */
+    public AsyncReporter(ClassloaderReporter delegate) {
+        this(delegate, DEFAULT_CAPACITY);
+    }
+    /**
+     * Constructor.
+     * @param delegate The reporter to write to.
+     * @param capacity Maximum number of queued events.
+     */
+    public AsyncReporter(ClassloaderReporter delegate, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.delegate = delegate;
+        this.capacity = capacity;
+    }
+    /**
+     * Stops accepting events and waits until all queued events are written.
+     * Further calls have no effect unless the writer failed, in which case
+     * the failure is rethrown.
+     */
+    public void close() {
+        Thread t;
+        synchronized (queue) {
+            closed = true;
+            queue.notifyAll();
+            t = writer;
+        }
+        if (t != null) {
+            boolean interrupted = false;
+            while (t.isAlive()) {
+                try {
+                    t.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        checkFailure();
+    }
+    /**
+     * Queues an event for the writer thread.
+     * @param event The event.
+     */
+    protected void handleEvent(ClassloaderReportEvent event) {
+        synchronized (queue) {
+            if (closed) {
+                throw new IllegalStateException("reporter already closed");
+            }
+            while ((queue.size() >= capacity) && (failure == null)) {
+                try {
+                    queue.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("interrupted while reporting");
+                }
+            }
+            checkFailure();
+            queue.addLast(event);
+            queue.notifyAll();
+            if (writer == null) {
+                writer = new Thread(new Runnable() {
+                    public void run() {
+                        write();
+                    }
+                }, "classloader report writer");
+                writer.setDaemon(true);
+                writer.start();
+            }
+        }
+        if (event.isEndReport()) {
+            close();
+        }
+    }
+    private void checkFailure() {
+        Throwable t;
+        synchronized (queue) {
+            t = failure;
+        }
+        if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        }
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        if (t != null) {
+            throw new RuntimeException(t.toString());
+        }
+    }
+    private void write() {
+        try {
+            while (true) {
+                ClassloaderReportEvent event;
+                synchronized (queue) {
+                    while (queue.isEmpty() && !closed) {
+                        queue.wait();
+                    }
+                    if (queue.isEmpty()) {
+                        return;
+                    }
+                    event = (ClassloaderReportEvent) queue.removeFirst();
+                    queue.notifyAll();
+                }
+                event.fire(delegate);
+            }
+        } catch (Throwable t) {
+            synchronized (queue) {
+                failure = t;
+                queue.clear();
+                queue.notifyAll();
+            }
+        }
+    }
+}
@@ -0,0 +1,441 @@
+/*
+ * Copyright  2005 The Apache Software Foundation
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.tools.ant.taskdefs.classloader.report;
+
+import java.net.URL;
+import java.util.ArrayList;
+
+/**
+ * A single call to a ClassloaderReporter, recorded to be replayed later
+ * or on another thread.
+ * @since Ant1.7
+ */
+public final class ClassloaderReportEvent {
+    private static final int BEGIN_ATTRIBUTES = 0;
+    private static final int BEGIN_CHILD_LOADERS = 1;
+    private static final int BEGIN_CLASSLOADER = 2;
+    private static final int BEGIN_ENTRIES = 3;
+    private static final int BEGIN_ERRORS = 4;
+    private static final int BEGIN_PACKAGES = 5;
+    private static final int BEGIN_REPORT = 6;
+    private static final int BEGIN_ROLES = 7;
+    private static final int BEGIN_UNASSIGNED_ROLES = 8;
+    private static final int END_ATTRIBUTES = 9;
+    private static final int END_CHILD_LOADERS = 10;
+    private static final int END_CLASSLOADER = 11;
+    private static final int END_ENTRIES = 12;
+    private static final int END_ERRORS = 13;
+    private static final int END_PACKAGES = 14;
+    private static final int END_REPORT = 15;
+    private static final int END_ROLES = 16;
+    private static final int END_UNASSIGNED_ROLES = 17;
+    private static final int REPORT_ATTRIBUTE = 18;
+    private static final int REPORT_CHILD = 19;
+    private static final int REPORT_CLASS = 20;
+    private static final int REPORT_ENTRY = 21;
+    private static final int REPORT_URL_ENTRY = 22;
+    private static final int REPORT_ERROR = 23;
+    private static final int REPORT_EXLICITELY_PARENT = 24;
+    private static final int REPORT_IMPLICITELY_PARENT = 25;
+    private static final int REPORT_PACKAGE = 26;
+    private static final int REPORT_ROLE = 27;
+    private static final int REPORT_UNASSIGNED_ROLE = 28;
+    private final Object arg;
+    private final Object arg2;
+    private final int kind;
+    private final int num;
+    /**
+     * Constructor.
+     * @param kind The reporter method.
+     * @param arg The first non-numeric argument or null.
+     * @param arg2 The second non-numeric argument or null.
+     * @param num The numeric argument or 0.
+     */
+    private ClassloaderReportEvent(int kind, Object arg, Object arg2, int num) {
+        this.kind = kind;
+        this.arg = arg;
+        this.arg2 = arg2;
+        this.num = num;
+    }
+    /**
+     * Replays this event to a reporter.
+     * @param to The reporter.
+     */
+    public void fire(ClassloaderReporter to) {
+        switch (kind) {
+        case BEGIN_ATTRIBUTES:
+            to.beginAttributes(num);
+            break;
+        case BEGIN_CHILD_LOADERS:
+            to.beginChildLoaders(num);
+            break;
+        case BEGIN_CLASSLOADER:
+            to.beginClassloader((ClassloaderReportHandle) arg);
+            break;
+        case BEGIN_ENTRIES:
+            to.beginEntries(num);
+            break;
+        case BEGIN_ERRORS:
+            to.beginErrors(num);
+            break;
+        case BEGIN_PACKAGES:
+            to.beginPackages(num);
+            break;
+        case BEGIN_REPORT:
+            to.beginReport();
+            break;
+        case BEGIN_ROLES:
+            to.beginRoles(num);
+            break;
+        case BEGIN_UNASSIGNED_ROLES:
+            to.beginUnassignedRoles(num);
+            break;
+        case END_ATTRIBUTES:
+            to.endAttributes(num);
+            break;
+        case END_CHILD_LOADERS:
+            to.endChildLoaders(num);
+            break;
+        case END_CLASSLOADER:
+            to.endClassloader((ClassloaderReportHandle) arg);
+            break;
+        case END_ENTRIES:
+            to.endEntries(num);
+            break;
+        case END_ERRORS:
+            to.endErrors(num);
+            break;
+        case END_PACKAGES:
+            to.endPackages(num);
+            break;
+        case END_REPORT:
+            to.endReport();
+            break;
+        case END_ROLES:
+            to.endRoles(num);
+            break;
+        case END_UNASSIGNED_ROLES:
+            to.endUnassignedRoles(num);
+            break;
+        case REPORT_ATTRIBUTE:
+            to.reportAttribute((String) arg, (String) arg2);
+            break;
+        case REPORT_CHILD:
+            to.reportChild((ClassloaderReportHandle) arg);
+            break;
+        case REPORT_CLASS:
+            to.reportClass((Class) arg);
+            break;
+        case REPORT_ENTRY:
+            to.reportEntry((String) arg, (String) arg2);
+            break;
+        case REPORT_URL_ENTRY:
+            to.reportEntry((URL) arg);
+            break;
+        case REPORT_ERROR:
+            to.reportError((String) arg);
+            break;
+        case REPORT_EXLICITELY_PARENT:
+            to.reportExlicitelyParent((ClassloaderReportHandle) arg);
+            break;
+        case REPORT_IMPLICITELY_PARENT:
+            to.reportImplicitelyParent((ClassloaderReportHandle) arg);
+            break;
+        case REPORT_PACKAGE:
+            to.reportPackage((String) arg);
+            break;
+        case REPORT_ROLE:
+            to.reportRole((ClassloaderReportHandle) arg);
+            break;
+        case REPORT_UNASSIGNED_ROLE:
+            to.reportUnassignedRole((ClassloaderReportHandle) arg);
+            break;
+        default:
+            throw new RuntimeException("internal error: unknown event " + kind);
+        }
+    }
+    /**
+     * Indicates whether this event terminates a report.
+     * @return True, if this event is an endReport event.
+     */
+    public boolean isEndReport() {
+        return kind == END_REPORT;
+    }
+    /**
+     * A reporter, that buffers the reported elements until they are
+     * replayed.
+     */
+    public static class Buffer extends Recorder {
+        private final ArrayList events = new ArrayList();
+        /**
+         * Buffers a single event.
+         * @param event The event.
+         */
+        protected void handleEvent(ClassloaderReportEvent event) {
+            events.add(event);
+        }
+        /**
+         * Replays all buffered events in the order they were reported.
+         * @param to The reporter to replay to.
+         */
+        public void replay(ClassloaderReporter to) {
+            for (int i = 0; i < events.size(); i++) {
+                ((ClassloaderReportEvent) events.get(i)).fire(to);
+            }
+        }
+    }
+    /**
+     * Base class for reporters, that handle the reported elements as
+     * events.
+     */
+    public abstract static class Recorder implements ClassloaderReporter {
+        /**
+         * Handles a single event.
+         * @param event The event.
+         */
+        protected abstract void handleEvent(ClassloaderReportEvent event);
+        /**
+         * Indicates start of attributes-section.
+         * @param num Number of elements.
+         */
+        public void beginAttributes(int num) {
+            handleEvent(new ClassloaderReportEvent(BEGIN_ATTRIBUTES,
+                    null, null, num));
+        }
+        /**
+         * Indicates start of child-section.
+         * @param num Number of elements.
+         */
+        public void beginChildLoaders(int num) {
+            handleEvent(new ClassloaderReportEvent(BEGIN_CHILD_LOADERS,
+                    null, null, num));
+        }
+        /**
+         * Indicates start of classloader reporting.
+         * @param name Handle of the classloader.
+         */
+        public void beginClassloader(ClassloaderReportHandle name) {
+            handleEvent(new ClassloaderReportEvent(BEGIN_CLASSLOADER,
+                    name, null, 0));
+        }
+        /**
+         * Indicates start of entries-section.
+         * @param num Number of elements.
+         */
+        public void beginEntries(int num) {
+            handleEvent(new ClassloaderReportEvent(BEGIN_ENTRIES,
+                    null, null, num));
+        }
+        /**
+         * Indicates start of error-section.
+         * @param num Number of elements.
+         */
+        public void beginErrors(int num) {
+            handleEvent(new ClassloaderReportEvent(BEGIN_ERRORS,
+                    null, null, num));
+        }
+        /**
+         * Indicates start of packages-section.
+         * @param num Number of elements.
+         */
+        public void beginPackages(int num) {
+            handleEvent(new ClassloaderReportEvent(BEGIN_PACKAGES,
+                    null, null, num));
+        }
+        /**
+         * Indicates start of report.
+         */
+        public void beginReport() {
+            handleEvent(new ClassloaderReportEvent(BEGIN_REPORT,
+                    null, null, 0));
+        }
+        /**
+         * Indicates start of role-section.
+         * @param num Number of elements.
+         */
+        public void beginRoles(int num) {
+            handleEvent(new ClassloaderReportEvent(BEGIN_ROLES,
+                    null, null, num));
+        }
+        /**
+         * Indicates start of unassigned-roles-section.
+         * @param num Number of elements.
+         */
+        public void beginUnassignedRoles(int num) {
+            handleEvent(new ClassloaderReportEvent(BEGIN_UNASSIGNED_ROLES,
+                    null, null, num));
+        }
+        /**
+         * Indicates end of attributes-section.
+         * @param num Number of elements.
+         */
+        public void endAttributes(int num) {
+            handleEvent(new ClassloaderReportEvent(END_ATTRIBUTES,
+                    null, null, num));
+        }
+        /**
+         * Indicates end of child-section.
+         * @param num Number of elements.
+         */
+        public void endChildLoaders(int num) {
+            handleEvent(new ClassloaderReportEvent(END_CHILD_LOADERS,
+                    null, null, num));
+        }
+        /**
+         * Indicates end of classloader reporting.
+         * @param name Handle of the classloader.
+         */
+        public void endClassloader(ClassloaderReportHandle name) {
+            handleEvent(new ClassloaderReportEvent(END_CLASSLOADER,
+                    name, null, 0));
+        }
+        /**
+         * Indicates end of entries-section.
+         * @param num Number of elements.
+         */
+        public void endEntries(int num) {
+            handleEvent(new ClassloaderReportEvent(END_ENTRIES,
+                    null, null, num));
+        }
+        /**
+         * Indicates end of errors-section.
+         * @param num Number of elements.
+         */
+        public void endErrors(int num) {
+            handleEvent(new ClassloaderReportEvent(END_ERRORS,
+                    null, null, num));
+        }
+        /**
+         * Indicates end of packages-section.
+         * @param num Number of elements.
+         */
+        public void endPackages(int num) {
+            handleEvent(new ClassloaderReportEvent(END_PACKAGES,
+                    null, null, num));
+        }
+        /**
+         * Indicates end of report.
+         */
+        public void endReport() {
+            handleEvent(new ClassloaderReportEvent(END_REPORT, null, null, 0));
+        }
+        /**
+         * Indicates end of roles-section.
+         * @param num Number of elements.
+         */
+        public void endRoles(int num) {
+            handleEvent(new ClassloaderReportEvent(END_ROLES, null, null, num));
+        }
+        /**
+         * Indicates end of unassigned-roles-section.
+         * @param num Number of elements.
+         */
+        public void endUnassignedRoles(int num) {
+            handleEvent(new ClassloaderReportEvent(END_UNASSIGNED_ROLES,
+                    null, null, num));
+        }
+        /**
+         * Reports a single attribute.
+         * @param name Name of the attribute.
+         * @param value Value of the attribute.
+         */
+        public void reportAttribute(String name, String value) {
+            handleEvent(new ClassloaderReportEvent(REPORT_ATTRIBUTE,
+                    name, value, 0));
+        }
+        /**
+         * Reports a single child.
+         * @param name Role of the child.
+         */
+        public void reportChild(ClassloaderReportHandle name) {
+            handleEvent(new ClassloaderReportEvent(REPORT_CHILD,
+                    name, null, 0));
+        }
+        /**
+         * Reports the classloader's class.
+         * @param s Class of the classloader.
+         */
+        public void reportClass(Class s) {
+            handleEvent(new ClassloaderReportEvent(REPORT_CLASS, s, null, 0));
+        }
+        /**
+         * Reports a single entry.
+         * @param type Type of the entry (f.e. url or file).
+         * @param entry The entry.
+         */
+        public void reportEntry(String type, String entry) {
+            handleEvent(new ClassloaderReportEvent(REPORT_ENTRY,
+                    type, entry, 0));
+        }
+        /**
+         * Reports a single url entry.
+         * Same as reportEntry("url", url.toString());
+         * @param url The url.
+         */
+        public void reportEntry(URL url) {
+            handleEvent(new ClassloaderReportEvent(REPORT_URL_ENTRY,
+                    url, null, 0));
+        }
+        /**
+         * Reports an error.
+         * @param msg The error message.
+         */
+        public void reportError(String msg) {
+            handleEvent(new ClassloaderReportEvent(REPORT_ERROR, msg, null, 0));
+        }
+        /**
+         * Reports an explicit parent classloader.
+         * @param handle The parent's handle.
+         */
+        public void reportExlicitelyParent(ClassloaderReportHandle handle) {
+            handleEvent(new ClassloaderReportEvent(REPORT_EXLICITELY_PARENT,
+                    handle, null, 0));
+        }
+        /**
+         * Reports an implicit parent classloader.
+         * @param handle The parent's handle.
+         */
+        public void reportImplicitelyParent(ClassloaderReportHandle handle) {
+            handleEvent(new ClassloaderReportEvent(REPORT_IMPLICITELY_PARENT,
+                    handle, null, 0));
+        }
+        /**
+         * Reports a single defined package.
+         * @param pkg The package name.
+         */
+        public void reportPackage(String pkg) {
+            handleEvent(new ClassloaderReportEvent(REPORT_PACKAGE,
+                    pkg, null, 0));
+        }
+        /**
+         * Reports a single role.
+         * @param handle The role.
+         */
+        public void reportRole(ClassloaderReportHandle handle) {
+            handleEvent(new ClassloaderReportEvent(REPORT_ROLE,
+                    handle, null, 0));
+        }
+        /**
+         * Reports a single unassigned role.
+         * @param handle The unassigned role.
+         */
+        public void reportUnassignedRole(ClassloaderReportHandle handle) {
+            handleEvent(new ClassloaderReportEvent(REPORT_UNASSIGNED_ROLE,
+                    handle, null, 0));
+        }
+    }
+}
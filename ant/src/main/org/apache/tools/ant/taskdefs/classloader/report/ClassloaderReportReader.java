@@ -0,0 +1,256 @@
+/*
+ * Copyright  2005 The Apache Software Foundation
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.tools.ant.taskdefs.classloader.report;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads a report written by ClassloaderReportXMLFormatter one classloader
+ * at a time. Works for the flat and for the tree hierarchy: the data of a
+ * classloader is complete as soon as its childs-section starts, so nested
+ * classloaders never need to be held in memory together with their parent.
+ * @since Ant1.7
+ */
+public class ClassloaderReportReader {
+    /**
+     * The data reported for a single classloader.
+     */
+    public static class Loader {
+        private final ArrayList attributes = new ArrayList();
+        private String className = null;
+        private final ArrayList entries = new ArrayList();
+        private final String handle;
+        private final ArrayList packages = new ArrayList();
+        private String parent = null;
+        private final ArrayList roles = new ArrayList();
+        /**
+         * Constructor.
+         * @param handle The handle of the classloader.
+         */
+        public Loader(String handle) {
+            this.handle = handle;
+        }
+        /**
+         * Gets the attributes as <code>name=value</code> strings.
+         * @return The attributes.
+         */
+        public List getAttributes() {
+            return attributes;
+        }
+        /**
+         * Gets the name of the classloader's class.
+         * @return The classname or null if not reported.
+         */
+        public String getClassName() {
+            return className;
+        }
+        /**
+         * Gets the entries as <code>type value</code> strings.
+         * @return The entries.
+         */
+        public List getEntries() {
+            return entries;
+        }
+        /**
+         * Gets the handle of the classloader.
+         * @return The handle.
+         */
+        public String getHandle() {
+            return handle;
+        }
+        /**
+         * Gets the defined packages.
+         * @return The package names.
+         */
+        public List getPackages() {
+            return packages;
+        }
+        /**
+         * Gets the parent classloader.
+         * @return The parent's handle and definition or null if not reported.
+         */
+        public String getParent() {
+            return parent;
+        }
+        /**
+         * Gets the roles of the classloader.
+         * @return The roles.
+         */
+        public List getRoles() {
+            return roles;
+        }
+    }
+    /**
+     * Handle used for the unassigned-roles-section of a report.
+     */
+    public static final String UNASSIGNED_ROLES = "unassigned roles";
+    private final BufferedReader in;
+    private int lineNumber = 0;
+    /**
+     * Constructor.
+     * @param in The reader to read the report from.
+     */
+    public ClassloaderReportReader(Reader in) {
+        this.in = (in instanceof BufferedReader) ? (BufferedReader) in
+                : new BufferedReader(in);
+    }
+    /**
+     * Closes the underlying reader.
+     * @throws IOException if the reader can't be closed.
+     */
+    public void close() throws IOException {
+        in.close();
+    }
+    /**
+     * Gets the number of lines read so far.
+     * @return The line number.
+     */
+    public int getLineNumber() {
+        return lineNumber;
+    }
+    /**
+     * Reads the next classloader.
+     * @return The next classloader or null if the report is exhausted.
+     * @throws IOException if the report can't be read.
+     */
+    public Loader next() throws IOException {
+        Loader current = null;
+        String line;
+        while ((line = in.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.startsWith("<classloader ")) {
+                current = new Loader(handle(parseAttributes(line)));
+            } else if (line.startsWith("<unassigned-roles")) {
+                current = new Loader(UNASSIGNED_ROLES);
+            } else if (current == null) {
+                continue;
+            } else if (line.startsWith("<childs")
+                    || line.startsWith("</classloader>")
+                    || line.startsWith("</unassigned-roles>")) {
+                return current;
+            } else if (line.startsWith("<class ")) {
+                current.className = (String) parseAttributes(line).get("name");
+            } else if (line.startsWith("<parent ")) {
+                Map attrs = parseAttributes(line);
+                current.parent = handle(attrs) + " ("
+                        + attrs.get("definition") + ")";
+            } else if (line.startsWith("<entry ")) {
+                Map attrs = parseAttributes(line);
+                String type = (String) attrs.keySet().iterator().next();
+                current.entries.add(type + " " + attrs.get(type));
+            } else if (line.startsWith("<attribute ")) {
+                Map attrs = parseAttributes(line);
+                current.attributes.add(attrs.get("name") + "="
+                        + attrs.get("value"));
+            } else if (line.startsWith("<package ")) {
+                current.packages.add(parseAttributes(line).get("name"));
+            } else if (line.startsWith("<role ")) {
+                current.roles.add(handle(parseAttributes(line)));
+            }
+        }
+        if (current != null) {
+            throw new IOException("unexpected end of report in line "
+                    + lineNumber);
+        }
+        return null;
+    }
+    private static String handle(Map attrs) {
+        String name = (String) attrs.get("name");
+        return attrs.get("type") + ((name != null) ? " " + name : "");
+    }
+    /**
+     * Parses the attributes of a single element. Attribute values are
+     * not required to be escaped.
+     * @param line The element.
+     * @return The attributes by name.
+     * @throws IOException if the line is not a well formed element.
+     */
+    private Map parseAttributes(String line) throws IOException {
+        HashMap result = new HashMap();
+        int close = line.lastIndexOf('"');
+        int pos = line.indexOf(' ');
+        while ((pos >= 0) && (pos < close)) {
+            int eq = line.indexOf("=\"", pos);
+            if ((eq < 0) || (eq >= close)) {
+                break;
+            }
+            int start = eq + 2;
+            int end = close;
+            // the value ends in front of the next ' name="'
+            int search = line.indexOf("\" ", start);
+            while ((search >= 0) && (search < close)) {
+                int next = line.indexOf("=\"", search);
+                if ((next > 0) && (next < close)
+                        && isName(line.substring(search + 2, next))) {
+                    end = search;
+                    break;
+                }
+                search = line.indexOf("\" ", search + 1);
+            }
+            if (end < start) {
+                throw new IOException("malformed element in line "
+                        + lineNumber);
+            }
+            result.put(line.substring(pos, eq).trim(), unescape(line
+                    .substring(start, end)));
+            pos = end + 1;
+        }
+        return result;
+    }
+    private static boolean isName(String s) {
+        if (s.length() == 0) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (!Character.isLetterOrDigit(c) && (c != '-') && (c != '_')) {
+                return false;
+            }
+        }
+        return true;
+    }
+    private static String unescape(String value) {
+        if (value.indexOf('&') < 0) {
+            return value;
+        }
+        StringBuffer result = new StringBuffer(value.length());
+        String[] from = new String[] {"&lt;", "&gt;", "&quot;", "&apos;",
+                "&amp;"};
+        String[] to = new String[] {"<", ">", "\"", "'", "&"};
+        int i = 0;
+        outer: while (i < value.length()) {
+            if (value.charAt(i) == '&') {
+                for (int j = 0; j < from.length; j++) {
+                    if (value.startsWith(from[j], i)) {
+                        result.append(to[j]);
+                        i += from[j].length();
+                        continue outer;
+                    }
+                }
+            }
+            result.append(value.charAt(i++));
+        }
+        return result.toString();
+    }
+}
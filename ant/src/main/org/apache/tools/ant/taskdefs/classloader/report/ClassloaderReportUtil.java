@@ -17,8 +17,11 @@
 package org.apache.tools.ant.taskdefs.classloader.report;
 
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
@@ -28,6 +31,7 @@ import java.util.TreeSet;
 import org.apache.tools.ant.taskdefs.classloader.ClassLoaderAdapter;
 import org.apache.tools.ant.taskdefs.classloader.ClassLoaderAdapterAction;
 import org.apache.tools.ant.taskdefs.classloader.ClassloaderContext;
+import org.apache.tools.ant.taskdefs.classloader.ClassloaderEvents;
 
 /**
  * Utility methods for the classloader report.
@@ -43,6 +47,43 @@ public class ClassloaderReportUtil {
             return ((Package) o1).getName().compareTo(((Package) o2).getName());
         }
     }
+    /**
+     * Buffers the report of a single classloader.
+     */
+    private final class Collector extends ClassloaderReportEvent.Buffer {
+        private final ClassLoader cl;
+        private Throwable failure = null;
+        private final ClassloaderReportHandle role;
+        private Collector(ClassLoader cl, ClassloaderReportHandle role) {
+            this.cl = cl;
+            this.role = role;
+        }
+        private void collect(ClassloaderContext.Report context,
+                Map handlesByLoader) {
+            try {
+                report(context, this, cl, role, handlesByLoader);
+            } catch (Throwable t) {
+                failure = t;
+            }
+        }
+        /**
+         * Replays the buffered events and rethrows a failure at the
+         * position where it occured.
+         * @param to The reporter to replay to.
+         */
+        public void replay(ClassloaderReporter to) {
+            super.replay(to);
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            }
+            if (failure instanceof Error) {
+                throw (Error) failure;
+            }
+            if (failure != null) {
+                throw new RuntimeException(failure.toString());
+            }
+        }
+    }
     private static ClassloaderReportUtil singleton = new ClassloaderReportUtil();
     /**
      * Gets the singleton report util.
@@ -148,6 +189,17 @@ public class ClassloaderReportUtil {
     public void report(ClassloaderContext.Report context,
             ClassloaderReporter to, ClassLoader cl,
             ClassloaderReportHandle name, Map handlesByLoader) {
+        Object ev = ClassloaderEvents.getEvents().begin(
+                ClassloaderEvents.REPORT);
+        reportLoader(context, to, cl, name, handlesByLoader);
+        if (ev != null) {
+            ClassloaderEvents.getEvents().commit(ev, name.toString(),
+                    "classloader", 1);
+        }
+    }
+    private void reportLoader(ClassloaderContext.Report context,
+            ClassloaderReporter to, ClassLoader cl,
+            ClassloaderReportHandle name, Map handlesByLoader) {
         to.beginClassloader(name);
         ClassLoaderAdapter baseAdapter = context.getUtil().findAdapter(context,
                 cl, null, to, "parent for " + name, "");
@@ -199,6 +251,9 @@ public class ClassloaderReportUtil {
                 "additional parameters for " + name, "");
         if (adapter != null) {
             adapter.report(to, context, cl, name);
+            if (context.isReportFootprint()) {
+                adapter.reportFootprint(to, context, cl, name);
+            }
         }
     }
     /**
@@ -220,7 +275,19 @@ public class ClassloaderReportUtil {
             Map/* <ClassLoader,SortedSet<ReportHandle>> */handlesByLoader,
             Map/* <ReportHandle,ClassLoader> */loaderByHandle,
             ClassloaderReporter to, boolean allHandlersFound) {
-
+        Object ev = ClassloaderEvents.getEvents().begin(
+                ClassloaderEvents.REPORT);
+        reportAll(context, handlesByLoader, loaderByHandle, to,
+                allHandlersFound);
+        if (ev != null) {
+            ClassloaderEvents.getEvents().commit(ev, "report", (context
+                    .getThreads() > 1) ? context.getThreads() + " threads"
+                    : "serial", handlesByLoader.size());
+        }
+    }
+    private void reportAll(ClassloaderContext.Report context,
+            Map handlesByLoader, Map loaderByHandle,
+            ClassloaderReporter to, boolean allHandlersFound) {
         to.beginReport();
         if (!allHandlersFound) {
             to.reportError("WARNING: As of missing Loaderhandlers,"
@@ -242,6 +309,10 @@ public class ClassloaderReportUtil {
             to.endEntries(urls.length);
             to.endClassloader(ClassloaderReportHandle.BOOTSTRAPHANDLE);
         }
+        Map collected = null;
+        if (context.getThreads() > 1) {
+            collected = collect(context, handlesByLoader, loaderByHandle);
+        }
         for (Iterator iRole = loaderByHandle.keySet().iterator(); iRole
                 .hasNext();) {
             ClassloaderReportHandle role = (ClassloaderReportHandle) iRole
@@ -254,12 +325,80 @@ public class ClassloaderReportUtil {
             } else {
                 SortedSet handles = (SortedSet) handlesByLoader.get(cl);
                 if (role.equals(handles.first())) {
-                    report(context, to, cl, role, handlesByLoader);
+                    if (collected == null) {
+                        report(context, to, cl, role, handlesByLoader);
+                    } else {
+                        ((Collector) collected.get(role)).replay(to);
+                    }
                 }
             }
         }
         to.endReport();
     }
+    /**
+     * Collects the data of all classloaders to report on
+     * <code>context.getThreads()</code> threads. Each classloader is
+     * reported into its own buffer, so the buffers can be replayed in the
+     * same order as the serial report.
+     * @param context The report context.
+     * @param handlesByLoader A map.
+     * @param loaderByHandle A map.
+     * @return The collectors by handle.
+     */
+    private Map collect(final ClassloaderContext.Report context,
+            final Map handlesByLoader, Map loaderByHandle) {
+        final ArrayList queue = new ArrayList();
+        HashMap result = new HashMap();
+        for (Iterator iRole = loaderByHandle.keySet().iterator(); iRole
+                .hasNext();) {
+            ClassloaderReportHandle role = (ClassloaderReportHandle) iRole
+                    .next();
+            ClassLoader cl = (ClassLoader) loaderByHandle.get(role);
+            if ((cl != null) && role.equals(
+                    ((SortedSet) handlesByLoader.get(cl)).first())) {
+                Collector c = new Collector(cl, role);
+                queue.add(c);
+                result.put(role, c);
+            }
+        }
+        Runnable worker = new Runnable() {
+            public void run() {
+                while (true) {
+                    Collector c;
+                    synchronized (queue) {
+                        if (queue.isEmpty()) {
+                            return;
+                        }
+                        c = (Collector) queue.remove(queue.size() - 1);
+                    }
+                    c.collect(context, handlesByLoader);
+                }
+            }
+        };
+        Collections.reverse(queue);
+        Thread[] threads = new Thread[Math.min(context.getThreads(), queue
+                .size())];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(worker, "classloader report collector "
+                    + i);
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+        boolean interrupted = false;
+        for (int i = 0; i < threads.length; i++) {
+            while (threads[i].isAlive()) {
+                try {
+                    threads[i].join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return result;
+    }
     private void reportPackages(ClassloaderContext.Report task,
             ClassloaderReporter to, ClassLoaderAdapter adapter,
             ClassLoader classloader, ClassloaderReportHandle role) {
@@ -0,0 +1,298 @@
+/*
+ * Copyright  2005 The Apache Software Foundation
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.tools.ant.taskdefs.classloader.report;
+
+import java.net.URL;
+
+/**
+ * Forwards every reporting event to a number of other reporters.
+ * This allows a single traversal to feed several builders or
+ * formatted outputs at once.
+ * @since Ant1.7
+ */
+public class TeeReporter implements ClassloaderReporter {
+    private final ClassloaderReporter[] reporters;
+    /**
+     * Constructor.
+     * @param reporters The reporters to forward to.
+     */
+    public TeeReporter(ClassloaderReporter[] reporters) {
+        this.reporters = reporters.clone();
+    }
+    /**
+     * Indicates start of attributes-section.
+     * @param num Number of elements.
+     */
+    public void beginAttributes(int num) {
+        for (int i = 0; i < reporters.length; i++) {
+            reporters[i].beginAttributes(num);
+        }
+    }
+    /**
+     * Indicates start of child-section.
+     * @param num Number of elements.
+     */
+    public void beginChildLoaders(int num) {
+        for (int i = 0; i < reporters.length; i++) {
+            reporters[i].beginChildLoaders(num);
+        }
+    }
+    /**
+     * Indicates start of classloader reporting.
+     * @param name Handle of the classloader.
+     */
+    public void beginClassloader(ClassloaderReportHandle name) {
+        for (int i = 0; i < reporters.length; i++) {
+            reporters[i].beginClassloader(name);
+        }
+    }
+    /**
+     * Indicates start of entries-section.
+     * @param num Number of elements.
+     */
+    public void beginEntries(int num) {
+        for (int i = 0; i < reporters.length; i++) {
+            reporters[i].beginEntries(num);
+        }
+    }
+    /**
+     * Indicates start of error-section.
+     * @param num Number of elements.
+     */
+    public void beginErrors(int num) {
+        for (int i = 0; i < reporters.length; i++) {
+            reporters[i].beginErrors(num);
+        }
+    }
+    /**
+     * Indicates start of packages-section.
+     * @param num Number of elements.
+     */
+    public void beginPackages(int num) {
+        for (int i = 0; i < reporters.length; i++) {
+            reporters[i].beginPackages(num);
+        }
+    }
+    /**
+     * Indicates start of report.
+     */
+    public void beginReport() {
+        for (int i = 0; i < reporters.length; i++) {
+            reporters[i].beginReport();
+        }
+    }
+    /**
+     * Indicates start of role-section.
+     * @param num Number of elements.
+     */
+    public void beginRoles(int num) {
+        for (int i = 0; i < reporters.length; i++) {
+            reporters[i].beginRoles(num);
+        }
+    }
+    /**
+     * Indicates start of unassigned-roles-section.
+     * @param num Number of elements.
+     */
+    public void beginUnassignedRoles(int num) {
+        for (int i = 0; i < reporters.length; i++) {
+            reporters[i].beginUnassignedRoles(num);
+        }
+    }
+    /**
+     * Indicates end of attributes-section.
+     * @param num Number of elements.
+     */
+    public void endAttributes(int num) {
+        for (int i = 0; i < reporters.length; i++) {
+            reporters[i].endAttributes(num);
+        }
+    }
+    /**
+     * Indicates end of child-section.
+     * @param num Number of elements.
+     */
+    public void endChildLoaders(int num) {
+        for (int i = 0; i < reporters.length; i++) {
+            reporters[i].endChildLoaders(num);
+        }
+    }
+    /**
+     * Indicates end of classloader reporting.
+     * @param name Handle of the classloader.
+     */
+    public void endClassloader(ClassloaderReportHandle name) {
+        for (int i = 0; i < reporters.length; i++) {
+            reporters[i].endClassloader(name);
+        }
+    }
+    /**
+     * Indicates end of entries-section.
+     * @param num Number of elements.
+     */
+    public void endEntries(int num) {
+        for (int i = 0; i < reporters.length; i++) {
+            reporters[i].endEntries(num);
+        }
+    }
+    /**
+     * Indicates end of errors-section.
+     * @param num Number of elements.
+     */
+    public void endErrors(int num) {
+        for (int i = 0; i < reporters.length; i++) {
+            reporters[i].endErrors(num);
+        }
+    }
+    /**
+     * Indicates end of packages-section.
+     * @param num Number of elements.
+     */
+    public void endPackages(int num) {
+        for (int i = 0; i < reporters.length; i++) {
+            reporters[i].endPackages(num);
+        }
+    }
+    /**
+     * Indicates end of report.
+     */
+    public void endReport() {
+        for (int i = 0; i < reporters.length; i++) {
+            reporters[i].endReport();
+        }
+    }
+    /**
+     * Indicates end of roles-section.
+     * @param num Number of elements.
+     */
+    public void endRoles(int num) {
+        for (int i = 0; i < reporters.length; i++) {
+            reporters[i].endRoles(num);
+        }
+    }
+    /**
+     * Indicates end of unassigned-roles-section.
+     * @param num Number of elements.
+     */
+    public void endUnassignedRoles(int num) {
+        for (int i = 0; i < reporters.length; i++) {
+            reporters[i].endUnassignedRoles(num);
+        }
+    }
+    /**
+     * Reports a single attribute.
+     * @param name Name of the attribute.
+     * @param value Value of the attribute.
+     */
+    public void reportAttribute(String name, String value) {
+        for (int i = 0; i < reporters.length; i++) {
+            reporters[i].reportAttribute(name, value);
+        }
+    }
+    /**
+     * Reports a single child.
+     * @param name Role of the child.
+     */
+    public void reportChild(ClassloaderReportHandle name) {
+        for (int i = 0; i < reporters.length; i++) {
+            reporters[i].reportChild(name);
+        }
+    }
+    /**
+     * Reports the classloader's class.
+     * @param s Class of the classloader.
+     */
+    public void reportClass(Class s) {
+        for (int i = 0; i < reporters.length; i++) {
+            reporters[i].reportClass(s);
+        }
+    }
+    /**
+     * Reports a single entry.
+     * @param type Type of the entry (f.e. url or file).
+     * @param entry The entry.
+     */
+    public void reportEntry(String type, String entry) {
+        for (int i = 0; i < reporters.length; i++) {
+            reporters[i].reportEntry(type, entry);
+        }
+    }
+    /**
+     * Reports a single url entry.
+     * Same as reportEntry("url", url.toString());
+     * @param url The url.
+     */
+    public void reportEntry(URL url) {
+        for (int i = 0; i < reporters.length; i++) {
+            reporters[i].reportEntry(url);
+        }
+    }
+    /**
+     * Reports an error.
+     * @param msg The error message.
+     */
+    public void reportError(String msg) {
+        for (int i = 0; i < reporters.length; i++) {
+            reporters[i].reportError(msg);
+        }
+    }
+    /**
+     * Reports an explicit parent classloader.
+     * @param handle The parent's handle.
+     */
+    public void reportExlicitelyParent(ClassloaderReportHandle handle) {
+        for (int i = 0; i < reporters.length; i++) {
+            reporters[i].reportExlicitelyParent(handle);
+        }
+    }
+    /**
+     * Reports an implicit parent classloader.
+     * @param handle The parent's handle.
+     */
+    public void reportImplicitelyParent(ClassloaderReportHandle handle) {
+        for (int i = 0; i < reporters.length; i++) {
+            reporters[i].reportImplicitelyParent(handle);
+        }
+    }
+    /**
+     * Reports a single defined package.
+     * @param pkg The package name.
+     */
+    public void reportPackage(String pkg) {
+        for (int i = 0; i < reporters.length; i++) {
+            reporters[i].reportPackage(pkg);
+        }
+    }
+    /**
+     * Reports a single role.
+     * @param handle The role.
+     */
+    public void reportRole(ClassloaderReportHandle handle) {
+        for (int i = 0; i < reporters.length; i++) {
+            reporters[i].reportRole(handle);
+        }
+    }
+    /**
+     * Reports a single unassigned role.
+     * @param handle The unassigned role.
+     */
+    public void reportUnassignedRole(ClassloaderReportHandle handle) {
+        for (int i = 0; i < reporters.length; i++) {
+            reporters[i].reportUnassignedRole(handle);
+        }
+    }
+}
@@ -19,7 +19,10 @@ package org.apache.tools.ant.types;
 
 import java.net.URLClassLoader;
 import java.util.ArrayList;
+import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 import org.apache.tools.ant.AntClassLoader;
 import org.apache.tools.ant.BuildException;
@@ -49,13 +52,24 @@ public final class LoaderHandler extends DataType implements ClassLoaderHandler,
                         , SimpleClassLoaderAdapter.class.getName()
                         , ClassLoader.class.getName())
     };
+    /**
+     * Projects, the predefined handlers have been added to.
+     */
+    private static final Map PREDEFINED = new WeakHashMap();
     /**
      * adds the predefined handlers to the project's reference table.
+     * This is done only once per project.
      * @param project the current project
      */
     public static void addPredefined(Project project) {
-        for (int i = 0; i < DEFAULT_HANDLERS.length; i++) {
-            DEFAULT_HANDLERS[i].setDesiredId(project);
+        synchronized (PREDEFINED) {
+            if (PREDEFINED.containsKey(project)) {
+                return;
+            }
+            for (int i = 0; i < DEFAULT_HANDLERS.length; i++) {
+                DEFAULT_HANDLERS[i].setDesiredId(project);
+            }
+            PREDEFINED.put(project, Boolean.TRUE);
         }
     }
     /**
@@ -82,7 +96,9 @@ public final class LoaderHandler extends DataType implements ClassLoaderHandler,
     public static ClassLoaderHandler[] getAllHandlers(Project project) {
         addPredefined(project);
         ArrayList list = new ArrayList(DEFAULT_HANDLERS.length);
-        for (Iterator i = project.getReferences().keySet().iterator(); i.hasNext();) {
+        // copy, as other tasks may add references meanwhile.
+        Hashtable refs = (Hashtable) project.getReferences().clone();
+        for (Iterator i = refs.keySet().iterator(); i.hasNext();) {
             Object o = project.getReference((String) i.next());
             if ((o != null) && (o instanceof LoaderHandler) && !((LoaderHandler) o).isReference()) {
                 list.add(o);
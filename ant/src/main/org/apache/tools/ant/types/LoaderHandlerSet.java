@@ -19,7 +19,6 @@ package org.apache.tools.ant.types;
 
 import java.util.ArrayList;
 import java.util.HashSet;
-import java.util.Iterator;
 
 import org.apache.tools.ant.Project;
 import org.apache.tools.ant.taskdefs.classloader.ClassLoaderAdapterAction;
@@ -29,6 +28,13 @@ import org.apache.tools.ant.taskdefs.classloader.ClassLoaderHandlerSet;
 
 /**
  * Set of ClassLoaderHandlers.
+ * <p>
+ * The handlers are configured by a single thread. On the first lookup, the
+ * configured handlers and the default or all handlers of the project are
+ * combined into an immutable snapshot, that is safely published; further
+ * lookups, also from parallel tasks, only read the snapshot. Configuring
+ * another handler discards the snapshot.
+ * </p>
  * @since Ant 1.7
  */
 public class LoaderHandlerSet extends DataType implements ClassLoaderHandlerSet {
@@ -45,6 +51,7 @@ public class LoaderHandlerSet extends DataType implements ClassLoaderHandlerSet
     private boolean addAll = false;
     private final ArrayList handlerList = new ArrayList();
     private final HashSet handlerSet = new HashSet();
+    private volatile LoaderHandler[] snapshot = null;
 
     /**
      * Default Constructor.
@@ -72,11 +79,12 @@ public class LoaderHandlerSet extends DataType implements ClassLoaderHandlerSet
      * sets a nested handler element.
      * @param handler the handler to add.
      */
-    public void addConfiguredHandler(ClassLoaderHandler handler) {
+    public synchronized void addConfiguredHandler(ClassLoaderHandler handler) {
         checkChildrenAllowed();
         handler.check();
         if (handlerSet.add(handler.getLoader())) {
             handlerList.add(handler);
+            snapshot = null;
         }
     }
     /**
@@ -96,24 +104,10 @@ public class LoaderHandlerSet extends DataType implements ClassLoaderHandlerSet
                                                                 , "loaderHandlerSet");
             return r.getHandler(task, loader, action);
         }
-        if (addAll) {
-            ClassLoaderHandler[] allHandlers = LoaderHandler.getAllHandlers(getProject());
-            for (int i = 0; i < allHandlers.length; i++) {
-                addConfiguredHandler(allHandlers[i]);
-            }
-            addAll = false;
-            addDefault = false;
-        }
-        if (addDefault) {
-            ClassLoaderHandler[] defHandlers = LoaderHandler.getDefaultHandlers(getProject());
-            for (int i = 0; i < defHandlers.length; i++) {
-                addConfiguredHandler(defHandlers[i]);
-            }
-            addDefault = false;
-        }
+        LoaderHandler[] handlers = getHandlers();
         ArrayList holderList = new ArrayList();
-        for (Iterator i = handlerList.iterator(); i.hasNext();) {
-            LoaderHandler handler = (LoaderHandler) i.next();
+        for (int i = 0; i < handlers.length; i++) {
+            LoaderHandler handler = handlers[i];
             Class loaderClass = handler.getLoaderClass(task, loader, action);
             if (loaderClass != null) {
                 holderList.add(new HandlerHolder(handler, loaderClass));
@@ -152,31 +146,65 @@ public class LoaderHandlerSet extends DataType implements ClassLoaderHandlerSet
         }
         return holders[0].handler;
     }
+    /**
+     * Gets the snapshot of the handlers, creating it if necessary.
+     * @return The handlers.
+     */
+    private LoaderHandler[] getHandlers() {
+        LoaderHandler[] result = snapshot;
+        if (result != null) {
+            return result;
+        }
+        synchronized (this) {
+            if (snapshot == null) {
+                ArrayList list = new ArrayList(handlerList);
+                HashSet loaders = new HashSet(handlerSet);
+                ClassLoaderHandler[] more = null;
+                if (addAll) {
+                    more = LoaderHandler.getAllHandlers(getProject());
+                } else if (addDefault) {
+                    more = LoaderHandler.getDefaultHandlers(getProject());
+                }
+                for (int i = 0; (more != null) && (i < more.length); i++) {
+                    more[i].check();
+                    if (loaders.add(more[i].getLoader())) {
+                        list.add(more[i]);
+                    }
+                }
+                snapshot = (LoaderHandler[]) list.toArray(
+                        new LoaderHandler[list.size()]);
+            }
+            return snapshot;
+        }
+    }
     /**
      * sets addDefault attribute
      * @param onOff true, to add the default handlers to this set.
      */
-    public void setAddDefault(boolean onOff) {
+    public synchronized void setAddDefault(boolean onOff) {
         checkAttributesAllowed();
         addDefault = onOff;
+        snapshot = null;
     }
     /**
      * sets addall attribute
      * @param onOff true, to add all handlers to this set.
      */
-    public void setAddAll(boolean onOff) {
+    public synchronized void setAddAll(boolean onOff) {
         checkAttributesAllowed();
         addAll = onOff;
+        snapshot = null;
     }
     /**
      * sets a handler attribute.
      * @param handler the handler to add.
      */
-    public void setHandler(LoaderHandler handler) {
+    public synchronized void setHandler(LoaderHandler handler) {
         checkAttributesAllowed();
         handler.check();
         if (handlerSet.add(handler.getLoader())) {
             handlerList.add(handler);
+            snapshot = null;
         }
     }
 }
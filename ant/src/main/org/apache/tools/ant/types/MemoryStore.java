@@ -0,0 +1,84 @@
+/*
+ * Copyright  2005 The Apache Software Foundation
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.tools.ant.types;
+
+import org.apache.tools.ant.taskdefs.classloader.loader.MemoryClassPath;
+
+/**
+ * An in-memory store of classes and resources, usable as classpath entry
+ * by a nested <code>&lt;memorypathelement&gt;</code> of an urlpath.
+ * A task generating classes, e.g. a compiler, fills the store found in the
+ * project's references with <code>put</code>; no class file is written to
+ * disk.
+ * @since Ant 1.7
+ */
+public class MemoryStore extends DataType {
+    private final MemoryClassPath.Store store = MemoryClassPath.newStore();
+    /**
+     * Default constructor.
+     */
+    public MemoryStore() {
+    }
+    /**
+     * gets the bytes of an entry.
+     * @param name the name of the entry, e.g. <code>org/example/Foo.class</code>
+     * @return the bytes or null if there is no such entry
+     */
+    public byte[] get(String name) {
+        return getStore().get(name);
+    }
+    /**
+     * gets the store.
+     * @return the store
+     */
+    public MemoryClassPath.Store getStore() {
+        if (isReference()) {
+            return ((MemoryStore) getCheckedRef(MemoryStore.class,
+                "memorystore")).getStore();
+        }
+        return store;
+    }
+    /**
+     * gets the url denoting the store as classpath entry.
+     * @return the url
+     */
+    public String getURL() {
+        return getStore().getURL();
+    }
+    /**
+     * adds or replaces an entry.
+     * @param name the name of the entry, e.g. <code>org/example/Foo.class</code>
+     * @param data the bytes, which are not copied
+     */
+    public void put(String name, byte[] data) {
+        getStore().put(name, data);
+    }
+    /**
+     * removes an entry.
+     * @param name the name of the entry
+     */
+    public void remove(String name) {
+        getStore().remove(name);
+    }
+    /**
+     * gets the number of entries.
+     * @return the number of entries
+     */
+    public int size() {
+        return getStore().size();
+    }
+}
@@ -18,18 +18,26 @@
 package org.apache.tools.ant.types;
 
 import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.net.MalformedURLException;
+import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
 import java.util.Stack;
 import java.util.StringTokenizer;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
 import org.apache.tools.ant.BuildException;
 import org.apache.tools.ant.DirectoryScanner;
 import org.apache.tools.ant.Project;
+import org.apache.tools.ant.types.selectors.SelectorUtils;
 import org.apache.tools.ant.util.URLUtils;
 
 /**
@@ -55,7 +63,20 @@ import org.apache.tools.ant.util.URLUtils;
  *
  * The path element takes a parameter <code>path</code> which will be parsed
  * and split into single elements. It will usually be used
- * to define a path from an environment variable.
+ * to define a path from an environment variable.<p>
+ *
+ * The location of an <code>urlpathelement</code> may be a local wildcard
+ * pattern like <code>lib/*</code> or <code>lib/**&#47;*.jar</code>; it is
+ * expanded to the matching files, when the path is listed. As in the java
+ * command's classpath, a last segment of just <code>*</code> matches only
+ * the files ending in <code>.jar</code> or <code>.JAR</code>.<p>
+ *
+ * A <code>memorypathelement</code> refers to a {@link MemoryStore}, whose
+ * classes and resources are read from memory.<p>
+ *
+ * If <code>expandManifest</code> is set, the <code>Class-Path</code>
+ * manifest attributes of local jar files are expanded transitively: the
+ * referenced entries follow the jar file, that references them.
  */
 
 public class URLPath extends DataType implements Cloneable {
@@ -70,8 +91,12 @@ public class URLPath extends DataType implements Cloneable {
                 return;
             }
             for (int i = 0; i < parts.length; i++) {
-                result.createPathElement().setLocation(
-                    URLUtils.getURLUtils().createFile(parts[i]));
+                String[] files = isWildcard(parts[i])
+                    ? expandWildcard(parts[i]) : new String[] {parts[i]};
+                for (int j = 0; j < files.length; j++) {
+                    result.createPathElement().setLocation(
+                        URLUtils.getURLUtils().createFile(files[j]));
+                }
             }
         }
         /**
@@ -108,6 +133,187 @@ public class URLPath extends DataType implements Cloneable {
         }
     }
 
+    /**
+     * Helper class, holds the nested <code>&lt;memorypathelement&gt;</code> values.
+     */
+    public class MemoryPathElement {
+        private Reference ref = null;
+        /**
+         * gets the url of the referenced store
+         * @return the url
+         * @throws BuildException if refid is not set or does not denote a
+         * memorystore
+         */
+        public String getURL() {
+            if (ref == null) {
+                throw new BuildException(
+                    "You must set refid on <memorypathelement>");
+            }
+            Object o = ref.getReferencedObject(getProject());
+            if (!(o instanceof MemoryStore)) {
+                throw new BuildException(ref.getRefId()
+                    + " doesn't denote a memorystore");
+            }
+            return ((MemoryStore) o).getURL();
+        }
+        /**
+         * sets the refid attribute
+         * @param r reference to a memorystore
+         */
+        public void setRefid(Reference r) {
+            ref = r;
+        }
+    }
+
+    /**
+     * The Class-Path of a jar file, as read at a modification time.
+     */
+    private static final class ManifestClassPath {
+        private final String[] classPath;
+        private final long lastModified;
+        private final long length;
+        private ManifestClassPath(File jar, String[] classPath) {
+            this.lastModified = jar.lastModified();
+            this.length = jar.length();
+            this.classPath = classPath;
+        }
+        private boolean isCurrent(File jar) {
+            return (jar.lastModified() == lastModified)
+                && (jar.length() == length);
+        }
+    }
+
+    /**
+     * The files and subdirectories of a directory, as listed at a
+     * modification time of the directory.
+     */
+    private static final class DirectoryListing {
+        private final String[] dirs;
+        private final String[] files;
+        private final long lastModified;
+        private DirectoryListing(File dir) {
+            // taken before listing, so a concurrent change isn't missed.
+            lastModified = dir.lastModified();
+            String[] names = dir.list();
+            if (names == null) {
+                names = new String[0];
+            }
+            Arrays.sort(names);
+            ArrayList d = new ArrayList();
+            ArrayList f = new ArrayList();
+            for (int i = 0; i < names.length; i++) {
+                if (new File(dir, names[i]).isDirectory()) {
+                    d.add(names[i]);
+                } else {
+                    f.add(names[i]);
+                }
+            }
+            dirs = (String[]) d.toArray(new String[d.size()]);
+            files = (String[]) f.toArray(new String[f.size()]);
+        }
+    }
+
+    // maps a directory to its DirectoryListing.
+    private static final HashMap DIRECTORY_LISTINGS = new HashMap();
+
+    // maps a jar file to its ManifestClassPath.
+    private static final HashMap MANIFEST_CLASS_PATHS = new HashMap();
+
+    /**
+     * Adds the files matching a wildcard pattern below a directory.
+     * @param dir the directory
+     * @param prefix the path of the directory relative to the base
+     * directory of the pattern
+     * @param pattern the pattern relative to the base directory
+     * @param jarsOnly whether only jar files match
+     * @param result the matching files as URLs
+     */
+    private static void addMatches(File dir, String prefix, String pattern,
+        boolean jarsOnly, ArrayList result) {
+        DirectoryListing listing = getDirectoryListing(dir);
+        for (int i = 0; i < listing.files.length; i++) {
+            if (jarsOnly && !isJar(listing.files[i])) {
+                continue;
+            }
+            if (SelectorUtils.matchPath(pattern, prefix + listing.files[i])) {
+                try {
+                    result.add(URLUtils.getURLUtils().createURL(
+                        new File(dir, listing.files[i]).getPath()).toString());
+                } catch (MalformedURLException e) {
+                    // not possible for a file
+                }
+            }
+        }
+        for (int i = 0; i < listing.dirs.length; i++) {
+            String path = prefix + listing.dirs[i];
+            if (SelectorUtils.matchPatternStart(pattern, path)) {
+                addMatches(new File(dir, listing.dirs[i]),
+                    path + File.separator, pattern, jarsOnly, result);
+            }
+        }
+    }
+
+    /**
+     * Expands a wildcard pattern to the matching files. A last segment of
+     * just '*' matches the jar files only, as in the java command's
+     * classpath.
+     * @param pattern the pattern, an absolute file or <code>file:</code> URL
+     * @return the matching files as URLs; the files of a directory in the
+     * order of their names, followed by those of its subdirectories
+     */
+    private static String[] expandWildcard(String pattern) {
+        String path = URLUtils.getURLUtils().createFile(pattern).getPath()
+            .replace('/', File.separatorChar);
+        int base = path.lastIndexOf(File.separatorChar, path.indexOf('*'));
+        boolean jarsOnly = path.endsWith(File.separator + "*");
+        ArrayList result = new ArrayList();
+        addMatches(new File(path.substring(0, base + 1)), "",
+            path.substring(base + 1), jarsOnly, result);
+        return (String[]) result.toArray(new String[result.size()]);
+    }
+
+    /**
+     * Gets the listing of a directory. The listing is cached per directory,
+     * until the modification time of the directory changes.
+     * @param dir the directory
+     * @return the listing
+     */
+    private static DirectoryListing getDirectoryListing(File dir) {
+        long lastModified = dir.lastModified();
+        synchronized (DIRECTORY_LISTINGS) {
+            DirectoryListing cached = (DirectoryListing) DIRECTORY_LISTINGS.get(dir);
+            if ((cached != null) && (cached.lastModified == lastModified)) {
+                return cached;
+            }
+        }
+        DirectoryListing result = new DirectoryListing(dir);
+        synchronized (DIRECTORY_LISTINGS) {
+            DIRECTORY_LISTINGS.put(dir, result);
+        }
+        return result;
+    }
+
+    /**
+     * Indicates whether a file name is that of a jar file.
+     * @param name the file name
+     * @return true, if the name ends in <code>.jar</code> or
+     * <code>.JAR</code>
+     */
+    private static boolean isJar(String name) {
+        return name.endsWith(".jar") || name.endsWith(".JAR");
+    }
+
+    /**
+     * Indicates whether a path entry is a local wildcard pattern.
+     * @param entry the entry
+     * @return true, if the entry is a file or <code>file:</code> URL
+     * containing '*'
+     */
+    private static boolean isWildcard(String entry) {
+        return (entry.indexOf('*') >= 0)
+            && URLUtils.getURLUtils().isFileOrFileURL(entry);
+    }
+
     /**
      * Adds a String to the Vector if it isn't already included.
      */
@@ -134,6 +340,7 @@ public class URLPath extends DataType implements Cloneable {
     }
 
     private ArrayList elements;
+    private boolean expandManifest = false;
     /**
      * simple constructor
      * @param project current project
@@ -296,7 +503,11 @@ public class URLPath extends DataType implements Cloneable {
                 o = r.getReferencedObject(getProject());
             }
 
-            if (o instanceof URLPathElement) {
+            if (o instanceof MemoryPathElement) {
+                throw new BuildException("in-memory entry "
+                    + ((MemoryPathElement) o).getURL()
+                    + " can't be converted into a file");
+            } else if (o instanceof URLPathElement) {
                 ((URLPathElement) o).addToPath(result);
             } else if (o instanceof URLPath) {
 
@@ -333,6 +544,109 @@ public class URLPath extends DataType implements Cloneable {
             }
         }
     }
+    /**
+     * Adds an entry and - transitively - the entries of its manifest's
+     * Class-Path, unless they are already included.
+     * @param entry the entry
+     * @param result the expanded entries
+     * @param added the expanded entries as set
+     * @param chain the entries, whose Class-Path is being expanded
+     */
+    private void addExpanded(String entry, ArrayList result, Set added,
+            Stack chain) {
+        if (!added.add(entry)) {
+            if (chain.contains(entry)) {
+                log("Class-Path cycle " + chain + " -> " + entry
+                    + " ignored", Project.MSG_VERBOSE);
+            }
+            return;
+        }
+        result.add(entry);
+        String[] classPath = getManifestClassPath(entry);
+        chain.push(entry);
+        for (int i = 0; i < classPath.length; i++) {
+            try {
+                URL url = new URL(new URL(entry), classPath[i]);
+                if (URLUtils.getURLUtils().createFile(url.toString())
+                        .exists()) {
+                    addExpanded(url.toString(), result, added, chain);
+                } else {
+                    log("dropping " + url + " from Class-Path of " + entry
+                        + " as it doesn't exist", Project.MSG_VERBOSE);
+                }
+            } catch (MalformedURLException e) {
+                log("invalid Class-Path entry " + classPath[i] + " in "
+                    + entry, Project.MSG_VERBOSE);
+            }
+        }
+        chain.pop();
+    }
+
+    /**
+     * Expands the manifest Class-Path of the local jar files of a list of
+     * entries.
+     * @param entries the entries
+     * @return the expanded entries
+     */
+    private ArrayList expandManifestClassPath(ArrayList entries) {
+        ArrayList result = new ArrayList(entries.size());
+        Set added = new HashSet();
+        for (int i = 0; i < entries.size(); i++) {
+            addExpanded((String) entries.get(i), result, added, new Stack());
+        }
+        return result;
+    }
+
+    /**
+     * Gets the Class-Path manifest attribute of a jar file. The attribute
+     * is cached per jar file, until the jar file is modified.
+     * @param entry the entry
+     * @return the Class-Path entries, empty if the entry is no local jar
+     * file or has no Class-Path
+     */
+    private String[] getManifestClassPath(String entry) {
+        if (!URLUtils.getURLUtils().isFileOrFileURL(entry)) {
+            return new String[0];
+        }
+        File jar = URLUtils.getURLUtils().createFile(entry);
+        if (!jar.isFile()) {
+            return new String[0];
+        }
+        synchronized (MANIFEST_CLASS_PATHS) {
+            ManifestClassPath cached =
+                (ManifestClassPath) MANIFEST_CLASS_PATHS.get(jar);
+            if ((cached != null) && cached.isCurrent(jar)) {
+                return cached.classPath;
+            }
+        }
+        ArrayList classPath = new ArrayList();
+        try {
+            JarFile jf = new JarFile(jar);
+            try {
+                Manifest mf = jf.getManifest();
+                String value = (mf == null) ? null : mf.getMainAttributes()
+                    .getValue(Attributes.Name.CLASS_PATH);
+                if (value != null) {
+                    for (StringTokenizer st = new StringTokenizer(value);
+                        st.hasMoreTokens();) {
+                        classPath.add(st.nextToken());
+                    }
+                }
+            } finally {
+                jf.close();
+            }
+        } catch (IOException e) {
+            log("can't read manifest of " + jar + ": " + e.getMessage(),
+                Project.MSG_VERBOSE);
+        }
+        String[] result =
+            (String[]) classPath.toArray(new String[classPath.size()]);
+        synchronized (MANIFEST_CLASS_PATHS) {
+            MANIFEST_CLASS_PATHS.put(jar, new ManifestClassPath(jar, result));
+        }
+        return result;
+    }
+
     /**
      * Adds a nested url path
      * @param path the urlpath
@@ -462,6 +776,18 @@ public class URLPath extends DataType implements Cloneable {
         return p;
     }
 
+    /**
+     * Creates the nested <code>&lt;memorypathelement&gt;</code> element.
+     * @return the new memorypathelement
+     */
+    public MemoryPathElement createMemorypathelement() {
+        checkChildrenAllowed();
+        MemoryPathElement pe = new MemoryPathElement();
+        elements.add(pe);
+        setChecked(false);
+        return pe;
+    }
+
     /**
      * Creates the nested <code>&lt;urlpathelement&gt;</code> element.
      * @return the new urlpathelement
@@ -567,7 +893,9 @@ public class URLPath extends DataType implements Cloneable {
                 o = r.getReferencedObject(getProject());
             }
 
-            if (o instanceof URLPathElement) {
+            if (o instanceof MemoryPathElement) {
+                addUnlessPresent(result, set, ((MemoryPathElement) o).getURL());
+            } else if (o instanceof URLPathElement) {
                 String[] parts = ((URLPathElement) o).getParts();
                 if (parts == null) {
                     throw new BuildException(
@@ -575,10 +903,17 @@ public class URLPath extends DataType implements Cloneable {
                             + " path on <urlpathelement>");
                 }
                 for (int j = 0; j < parts.length; j++) {
-                    addUnlessPresent(
-                        result,
-                        set,
-                        resolveURL(getProject(), parts[j]));
+                    if (isWildcard(parts[j])) {
+                        String[] files = expandWildcard(parts[j]);
+                        for (int k = 0; k < files.length; k++) {
+                            addUnlessPresent(result, set, files[k]);
+                        }
+                    } else {
+                        addUnlessPresent(
+                            result,
+                            set,
+                            resolveURL(getProject(), parts[j]));
+                    }
                 }
             } else if (o instanceof URLPath) {
                 URLPath p = (URLPath) o;
@@ -623,9 +958,22 @@ public class URLPath extends DataType implements Cloneable {
                 addUnlessPresent(result, set, dir, s);
             }
         }
+        if (expandManifest) {
+            result = expandManifestClassPath(result);
+        }
         return (String[]) result.toArray(new String[result.size()]);
     }
 
+    /**
+     * Sets whether the manifest Class-Path of local jar files is expanded.
+     * @param onOff true, to add the entries referenced by the Class-Path
+     * manifest attributes transitively
+     */
+    public void setExpandManifest(boolean onOff) {
+        checkAttributesAllowed();
+        expandManifest = onOff;
+    }
+
     /**
      * Adds a element definition to the path.
      * @param location the location of the element to add (must not be
@@ -26,6 +26,7 @@ import java.util.StringTokenizer;
 
 import org.apache.tools.ant.BuildException;
 import org.apache.tools.ant.taskdefs.classloader.ClassloaderURLUtil;
+import org.apache.tools.ant.taskdefs.classloader.loader.MemoryClassPath;
 import org.apache.tools.ant.taskdefs.condition.Os;
 
 /**
@@ -63,7 +64,7 @@ public final class URLUtils implements ClassloaderURLUtil {
      */
     public URL createURL(String fileOrURL) throws MalformedURLException {
         if (isURL(fileOrURL)) {
-            return new URL(normalize(fileOrURL));
+            return newURL(normalize(fileOrURL));
         }
         return FILEUTILS.getFileURL(new File(fileOrURL));
     }
@@ -75,7 +76,7 @@ public final class URLUtils implements ClassloaderURLUtil {
      */
     public boolean isAbsolute(String fileOrURL)throws MalformedURLException {
         if (isURL(fileOrURL)) {
-            URL url = new URL(transformFileSep(fileOrURL));
+            URL url = newURL(transformFileSep(fileOrURL));
             String urlStr = url.toString();
             if (url.getProtocol() != null) {
                 urlStr = urlStr.substring(url.getProtocol().length() + 1);
@@ -108,12 +109,25 @@ public final class URLUtils implements ClassloaderURLUtil {
             return false;
         }
         try {
-            URL url = new URL(transformFileSep(fileOrURL));
+            URL url = newURL(transformFileSep(fileOrURL));
             return (url.getProtocol() != null);
         } catch (MalformedURLException murlex) {
             return false;
         }
     }
+    /**
+     * creates an URL, using the handler of in-memory classpath entries
+     * for <code>antmem:</code> URLs.
+     * @param spec the url
+     * @return the url
+     * @throws MalformedURLException if <code>new URL()</code> throws it
+     */
+    private static URL newURL(String spec) throws MalformedURLException {
+        if (MemoryClassPath.isMemoryURL(spec)) {
+            return MemoryClassPath.createURL(spec);
+        }
+        return new URL(spec);
+    }
     /**
      * normalizes an absolute or relative file or url
      * @param fileOrURL absolute or relative file or url
@@ -125,7 +139,7 @@ public final class URLUtils implements ClassloaderURLUtil {
         }
         String orig = fileOrURL;
         fileOrURL = transformFileSep(fileOrURL);
-        fileOrURL = new URL(fileOrURL).toString();
+        fileOrURL = newURL(fileOrURL).toString();
         String root = fileOrURL.substring(0, fileOrURL.indexOf(':') + 1);
         fileOrURL = fileOrURL.substring(root.length());
         while (fileOrURL.startsWith("/")) {
@@ -36,6 +36,56 @@ public class ClassloaderReportTest extends BuildFileTest {
         expectLogContaining("test.report","classloaderreport");
     }
 
+    public void testOutputs() {
+        expectPropertySet("test.outputs","test.outputs");
+    }
+
+    public void testAsync() {
+        expectPropertySet("test.async","test.async");
+    }
+
+    public void testThreads() {
+        expectPropertySet("test.threads","test.threads");
+    }
+
+    public void testStatistics() {
+        expectPropertySet("test.statistics","test.statistics");
+    }
+
+    public void testFootprint() {
+        expectPropertySet("test.footprint","test.footprint");
+    }
+
+    public void testSharedJars() {
+        expectPropertySet("test.sharedjars","test.sharedjars");
+    }
+
+    public void testClassCache() throws Exception {
+        executeTarget("test.classcache");
+        // identical jar files, so the second loader finds the class bytes
+        // cached by the first.
+        ((ClassLoader) getProject().getReference("test.cl.cache1"))
+                .loadClass("CacheTest");
+        ((ClassLoader) getProject().getReference("test.cl.cache2"))
+                .loadClass("CacheTest");
+        expectPropertySet("test.classcache.report", "test.classcache.report");
+    }
+
+    public void testClassCacheLimit() {
+        expectLogContaining("test.classcache.limit",
+                "exceeds half of the direct memory limit");
+    }
+
+    public void testDiff() {
+        expectPropertySet("test.diff","test.diff","4");
+        assertLogContaining("+ package org.example.b");
+        assertLogContaining("- classloader Referenced as test.loader");
+    }
+
+    public void testDiffSame() {
+        expectPropertyUnset("test.diff.same","test.diff.same");
+    }
+
     public void tearDown() {
         executeTarget("cleanup");
     }
@@ -17,7 +17,32 @@
 
 package org.apache.tools.ant.taskdefs;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
 import org.apache.tools.ant.BuildFileTest;
+import org.apache.tools.ant.taskdefs.classloader.jmx.ClassloaderRegistry;
+import org.apache.tools.ant.taskdefs.classloader.loader.LazyClassLoader;
 
 /**
  * Tests ClassloaderBase task.
@@ -53,9 +78,408 @@ public class ClassloaderTaskTest extends BuildFileTest {
     public void testUpdateSystem() {
         expectPropertySet("test.updateSystem","test.updateSystem");
     }
+    public void testJmx() throws Exception {
+        executeTarget("test.jmx");
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = ClassloaderRegistry.getObjectName("test.cl.jmx");
+        assertTrue(server.isRegistered(name));
+        assertEquals(new Integer(1), server.getAttribute(name, "EntryCount"));
+        String report = (String) server.invoke(new ObjectName(
+                ClassloaderRegistry.DOMAIN + ":type=Registry"), "dumpReport",
+                new Object[] {"xml", null},
+                new String[] {String.class.getName(), String.class.getName()});
+        assertTrue(report.indexOf("test.cl.jmx") >= 0);
+    }
+
+    public void testTimings() {
+        executeTarget("test.timings");
+        String phases = getProject().getProperty("test.timings");
+        assertNotNull(phases);
+        assertTrue(phases, phases.indexOf("create") >= 0);
+        assertNotNull(getProject().getProperty("test.timings.create"));
+        assertEquals("1", getProject().getProperty("test.timings.create.count"));
+        assertNotNull(getProject().getProperty("test.timings.resolve"));
+    }
+
+    public void testLazy() {
+        executeTarget("test.lazy");
+        Object ref = getProject().getReference("test.cl.lazy");
+        assertTrue(ref instanceof LazyClassLoader);
+        LazyClassLoader lazy = (LazyClassLoader) ref;
+        assertFalse(lazy.isCreated());
+        assertNotNull(lazy.getResource("classloadertest.properties"));
+        assertTrue(lazy.isCreated());
+        assertSame(lazy.getLoader(), getProject().getReference("test.cl.lazy"));
+    }
+
+    public void testLazyReset() {
+        executeTarget("test.lazy");
+        LazyClassLoader lazy = (LazyClassLoader) getProject().getReference(
+                "test.cl.lazy");
+        executeTarget("test.lazy.reset");
+        Object current = getProject().getReference("test.cl.lazy");
+        assertNotSame(lazy, current);
+        // a replaced placeholder still works, but doesn't take the reference.
+        assertNotNull(lazy.getResource("classloadertest.properties"));
+        assertSame(current, getProject().getReference("test.cl.lazy"));
+    }
+
+    public void testPrefetch() {
+        expectPropertySet("test.prefetch","test.prefetch");
+    }
+
+    public void testPrefetchWithoutLazy() {
+        expectBuildExceptionContaining("test.prefetch.nolazy", "lazy-only",
+                "prefetch requires lazy");
+    }
+
+    public void testClassloaders() {
+        expectPropertySet("test.classloaders","test.classloaders");
+    }
+
+    public void testClassloadersCycle() {
+        expectBuildExceptionContaining("test.classloaders.cycle", "cycle",
+                "cyclic dependency");
+    }
+
+    public void testClassloadersFail() {
+        expectBuildExceptionContaining("test.classloaders.fail", "failure",
+                "test.cl.fail: Referenced object test.cl.missing not found");
+    }
+
+    public void testParallel() {
+        expectPropertySet("test.parallel","test.parallel");
+    }
+
+    public void testParallelAppend() {
+        executeTarget("test.parallelAppend");
+        String cp = getProject().getProperty("test.cl.parallelAppend");
+        assertNotNull(cp);
+        assertTrue(cp, cp.indexOf("path1") >= 0);
+        assertEquals(cp, cp.indexOf("path2"), cp.lastIndexOf("path2"));
+    }
+
+    public void testScope() {
+        expectPropertySet("test.scope","test.scope");
+    }
+
+    public void testScopeSubbuild() {
+        executeTarget("test.scope.subbuild");
+        // logged at verbose level.
+        assertDebuglogContaining("test.cl.scope.sub disposed");
+    }
+
+    public void testScopeInvalid() {
+        expectBuildExceptionContaining("test.scope.invalid",
+                "target scope on a standard loader", "not supported");
+    }
+
+    public void testBudget() {
+        expectLogContaining("test.budget", "evicting classloader test.cl.budget2");
+        assertPropertySet("test.budget");
+    }
+
+    public void testBudgetSelf() {
+        executeTarget("test.budget.self");
+        // logged at verbose level.
+        assertDebuglogContaining(
+                "but no loader other than test.cl.budget.child is idle");
+        assertPropertySet("test.budget.self");
+    }
+
+    public void testLeaks() {
+        // the replaced AntClassLoader is still a listener of the project.
+        expectLogContaining("test.leaks", "classloader test.cl.leaks (");
+        assertPropertySet("test.leaks");
+    }
+
+    public void testDirectoryIndex() throws Exception {
+        executeTarget("test.dirindex");
+        ClassLoader cl = (ClassLoader) getProject().getReference(
+                "test.cl.dirindex");
+        String name = "org/example/dirindex.properties";
+        assertNull(cl.getResource(name));
+        File f = new File(getProject().getBaseDir(),
+                "classloadertask.tmp/classes/" + name);
+        new FileOutputStream(f).close();
+        // seen at once, though the file system reports it later.
+        assertNotNull(cl.getResource(name));
+        f.delete();
+        assertNull(cl.getResource(name));
+    }
+
+    public void testExpandManifest() {
+        executeTarget("test.expandManifest");
+        String cp = getProject().getProperty("test.cl.expandManifest");
+        assertNotNull(cp);
+        int a = cp.indexOf("a.jar");
+        int b = cp.indexOf("b.jar");
+        int c = cp.indexOf("c.jar");
+        assertTrue(cp, (a >= 0) && (a < b) && (b < c));
+        assertEquals(cp, a, cp.lastIndexOf("a.jar"));
+        assertEquals(cp, c, cp.lastIndexOf("c.jar"));
+        assertEquals(cp, -1, cp.indexOf("missing.jar"));
+    }
+
+    public void testJarFiles() throws Exception {
+        executeTarget("test.jarfiles");
+        ClassLoader cl = (ClassLoader) getProject().getReference(
+                "test.cl.jarfiles");
+        URL url = cl.getResource("classloadertest.properties");
+        assertNotNull("Class-Path not followed", url);
+        assertTrue(url.toString(), url.toString().indexOf("b.jar!/") >= 0);
+        // versioned entries are read from Java 9 on.
+        String release = System.getProperty("java.specification.version")
+                .startsWith("1.") ? "base" : "9";
+        assertEquals(release, readResource(cl,
+                "org/example/release.properties"));
+        URLConnection con = cl.getResource("org/example/release.properties")
+                .openConnection();
+        assertTrue(con.getClass().getName(), con instanceof JarURLConnection);
+        assertEquals(1, con.getContentLength());
+        assertNotNull(((JarURLConnection) con).getManifest());
+    }
+
+    public void testSealed() throws Exception {
+        File dir = new File(getProject().getBaseDir(),
+                "classloadertask.tmp/sealed");
+        new File(dir, "classes/org/example").mkdirs();
+        Manifest man = new Manifest();
+        man.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        man.getMainAttributes().put(Attributes.Name.SEALED, "true");
+        writeFile(new File(dir, "a.jar"), jarBytes(man, "org/example/A.class",
+                classBytes("org/example/A")));
+        writeFile(new File(dir, "classes/org/example/B.class"),
+                classBytes("org/example/B"));
+        executeTarget("test.sealed");
+        ClassLoader cl = (ClassLoader) getProject().getReference(
+                "test.cl.sealed");
+        assertTrue(cl.loadClass("org.example.A").getPackage().isSealed());
+        try {
+            cl.loadClass("org.example.B");
+            fail("sealing violation not detected");
+        } catch (SecurityException e) {
+            assertTrue(e.getMessage(), e.getMessage().indexOf("sealed") >= 0);
+        }
+    }
+
+    public void testRemoteManifest() throws Exception {
+        Manifest man = new Manifest();
+        man.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        man.getMainAttributes().put(Attributes.Name.IMPLEMENTATION_VERSION,
+                "1.2");
+        final byte[] body = jarBytes(man, "org/example/A.class",
+                classBytes("org/example/A"));
+        HttpServer server = HttpServer.create(new InetSocketAddress(
+                "127.0.0.1", 0), 0);
+        server.createContext("/remote.jar", new HttpHandler() {
+            public void handle(HttpExchange ex) throws IOException {
+                ex.sendResponseHeaders(200, body.length);
+                ex.getResponseBody().write(body);
+                ex.close();
+            }
+        });
+        server.start();
+        try {
+            String url = "http://127.0.0.1:" + server.getAddress().getPort()
+                    + "/remote.jar";
+            getProject().setProperty("test.remote.url", url);
+            executeTarget("test.remote");
+            ClassLoader cl = (ClassLoader) getProject().getReference(
+                    "test.cl.remote");
+            Class c = cl.loadClass("org.example.A");
+            assertSame(cl, c.getClassLoader());
+            // the package is defined from the remote jar's manifest.
+            assertEquals("1.2", c.getPackage().getImplementationVersion());
+            assertEquals(url, c.getProtectionDomain().getCodeSource()
+                    .getLocation().toString());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    public void testWildcard() {
+        executeTarget("test.wildcard");
+        String cp = getProject().getProperty("test.cl.wildcard.jars");
+        assertNotNull(cp);
+        assertTrue(cp, cp.indexOf("x.jar") >= 0);
+        assertTrue(cp, cp.indexOf("y.jar") >= 0);
+        assertEquals(cp, -1, cp.indexOf("classloadertest.properties"));
+        cp = getProject().getProperty("test.cl.wildcard.all");
+        assertNotNull(cp);
+        assertTrue(cp, cp.indexOf("x.jar") >= 0);
+        assertTrue(cp, cp.indexOf("z.JAR") >= 0);
+        assertEquals(cp, -1, cp.indexOf("classloadertest.properties"));
+        assertEquals(cp, -1, cp.indexOf("y.jar"));
+        cp = getProject().getProperty("test.cl.wildcard.files");
+        assertNotNull(cp);
+        assertTrue(cp, cp.indexOf("classloadertest.properties") >= 0);
+        // the files of a directory precede those of its subdirectories.
+        assertTrue(cp, cp.indexOf("x.jar") < cp.indexOf("y.jar"));
+        assertTrue(cp, cp.indexOf("z.JAR") < cp.indexOf("y.jar"));
+    }
+
+    public void testDownload() throws Exception {
+        ByteArrayOutputStream jar = new ByteArrayOutputStream();
+        JarOutputStream jout = new JarOutputStream(jar);
+        jout.putNextEntry(new JarEntry("classloadertest.properties"));
+        jout.write("test=download".getBytes());
+        jout.close();
+        final byte[] body = jar.toByteArray();
+        final int[] requests = new int[2];
+        HttpServer server = HttpServer.create(new InetSocketAddress(
+                "127.0.0.1", 0), 0);
+        server.createContext("/remote.jar", new HttpHandler() {
+            public void handle(HttpExchange ex) throws IOException {
+                ex.getResponseHeaders().set("ETag", "\"1\"");
+                if ("\"1\"".equals(ex.getRequestHeaders().getFirst(
+                        "If-None-Match"))) {
+                    requests[1]++;
+                    ex.sendResponseHeaders(304, -1);
+                } else {
+                    requests[0]++;
+                    ex.sendResponseHeaders(200, body.length);
+                    ex.getResponseBody().write(body);
+                }
+                ex.close();
+            }
+        });
+        server.start();
+        try {
+            String url = "http://127.0.0.1:" + server.getAddress().getPort()
+                    + "/remote.jar";
+            getProject().setProperty("test.download.url", url);
+            executeTarget("test.download");
+            String cp = getProject().getProperty("test.cl.download");
+            assertEquals(cp, -1, cp.indexOf("http:"));
+            assertTrue(cp, cp.indexOf("downloads") >= 0);
+            ClassLoader cl = (ClassLoader) getProject().getReference(
+                    "test.cl.download");
+            assertNotNull(cl.getResource("classloadertest.properties"));
+            assertEquals(1, requests[0]);
+            // a new build validates the download with a conditional request
+            setUp();
+            getProject().setProperty("test.download.url", url);
+            executeTarget("test.download");
+            assertEquals(cp, getProject().getProperty("test.cl.download"));
+            assertEquals(1, requests[0]);
+            assertEquals(1, requests[1]);
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    public void testMemory() throws Exception {
+        executeTarget("test.memory");
+        String cp = getProject().getProperty("test.cl.memory");
+        assertTrue(cp, cp.startsWith("antmem:"));
+        // filled after creation, like a compiler would do.
+        putMemoryEntry("test.memory.store", "org/example/a.properties", "a");
+        putMemoryEntry("test.memory.store", "org/example/b.properties", "b");
+        ClassLoader cl = (ClassLoader) getProject().getReference(
+                "test.cl.memory");
+        assertEquals("a", readResource(cl, "org/example/a.properties"));
+        assertEquals("b", readResource(cl, "org/example/b.properties"));
+        assertNull(cl.getResource("org/example/c.properties"));
+        // a class is defined from the bytes in memory.
+        putMemoryEntry("test.memory.store", "org/example/Gen.class",
+                classBytes("org/example/Gen"));
+        Class c = cl.loadClass("org.example.Gen");
+        assertSame(cl, c.getClassLoader());
+        assertEquals("org.example", c.getPackage().getName());
+    }
+
+    public void testMemoryAppend() throws Exception {
+        executeTarget("test.memory.append");
+        String cp = getProject().getProperty("test.cl.memory.append");
+        assertNotNull(cp);
+        assertEquals(cp, 2, cp.split(";").length);
+        ClassLoader cl = (ClassLoader) getProject().getReference(
+                "test.cl.memory");
+        putMemoryEntry("test.memory.store2", "org/example/d.properties", "d");
+        assertEquals("d", readResource(cl, "org/example/d.properties"));
+    }
+
+    private void putMemoryEntry(String store, String name, String content)
+            throws Exception {
+        putMemoryEntry(store, name, content.getBytes());
+    }
+
+    private void putMemoryEntry(String store, String name, byte[] content)
+            throws Exception {
+        Object o = getProject().getReference(store);
+        o.getClass().getMethod("put", new Class[] {String.class,
+                byte[].class}).invoke(o, new Object[] {name, content});
+    }
+
+    private static byte[] jarBytes(Manifest man, String name, byte[] content)
+            throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        JarOutputStream out = new JarOutputStream(bytes, man);
+        out.putNextEntry(new JarEntry(name));
+        out.write(content);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static void writeFile(File f, byte[] content) throws IOException {
+        FileOutputStream out = new FileOutputStream(f);
+        try {
+            out.write(content);
+        } finally {
+            out.close();
+        }
+    }
+
+    // the class file of an empty public class; no class of the test
+    // classpath can be used, as the parent loader would define it.
+    private static byte[] classBytes(String name) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0xCAFEBABE);
+        // version 49.0, Java 5.
+        out.writeShort(0);
+        out.writeShort(49);
+        // constant pool: #1 this class, #3 super class.
+        out.writeShort(5);
+        out.writeByte(7);
+        out.writeShort(2);
+        out.writeByte(1);
+        out.writeUTF(name);
+        out.writeByte(7);
+        out.writeShort(4);
+        out.writeByte(1);
+        out.writeUTF("java/lang/Object");
+        // ACC_PUBLIC | ACC_SUPER, this, super.
+        out.writeShort(0x21);
+        out.writeShort(1);
+        out.writeShort(3);
+        // no interfaces, fields, methods or attributes.
+        out.writeShort(0);
+        out.writeShort(0);
+        out.writeShort(0);
+        out.writeShort(0);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static String readResource(ClassLoader cl, String name)
+            throws IOException {
+        URL url = cl.getResource(name);
+        assertNotNull(name, url);
+        InputStream in = url.openStream();
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            for (int b = in.read(); b >= 0; b = in.read()) {
+                out.write(b);
+            }
+            return out.toString();
+        } finally {
+            in.close();
+        }
+    }
 
     public void tearDown() {
         executeTarget("cleanup");
     }
-
 }
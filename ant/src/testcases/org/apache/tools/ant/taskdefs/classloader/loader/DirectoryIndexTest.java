@@ -0,0 +1,120 @@
+/*
+ * Copyright  2005 The Apache Software Foundation
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.tools.ant.taskdefs.classloader.loader;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for org.apache.tools.ant.taskdefs.classloader.loader.DirectoryIndex.
+ *
+ */
+public class DirectoryIndexTest extends TestCase {
+
+    // a polling watch service reports changes after about 10 seconds.
+    private static final int TIMEOUT = 30000;
+
+    private File dir;
+
+    public DirectoryIndexTest(String name) {
+        super(name);
+    }
+
+    public void setUp() throws IOException {
+        dir = File.createTempFile("dirindex", "");
+        dir.delete();
+        new File(dir, "org/example").mkdirs();
+    }
+
+    public void tearDown() {
+        new File(dir, "org/other/a.properties").delete();
+        new File(dir, "org/other").delete();
+        new File(dir, "org/example/a.properties").delete();
+        new File(dir, "org/example").delete();
+        new File(dir, "org").delete();
+        dir.delete();
+    }
+
+    public void testMissIsConfirmed() throws IOException {
+        DirectoryIndex index = new DirectoryIndex(dir);
+        try {
+            assertFalse(index.contains("org/example/a.properties"));
+            create("org/example/a.properties");
+            // not reported yet, but found.
+            assertTrue(index.contains("org/example/a.properties"));
+        } finally {
+            index.close();
+        }
+    }
+
+    public void testNewPackage() throws Exception {
+        DirectoryIndex index = new DirectoryIndex(dir);
+        try {
+            if (!index.isWatched()) {
+                return;
+            }
+            new File(dir, "org/other").mkdir();
+            create("org/other/a.properties");
+            // seen, when the new directory is reported.
+            long end = System.currentTimeMillis() + TIMEOUT;
+            while (!index.contains("org/other/a.properties")
+                    && (System.currentTimeMillis() < end)) {
+                Thread.sleep(100);
+            }
+            assertTrue(index.contains("org/other/a.properties"));
+            new File(dir, "org/other/a.properties").delete();
+            new File(dir, "org/other").delete();
+            end = System.currentTimeMillis() + TIMEOUT;
+            while (index.contains("org/other/a.properties")
+                    && (System.currentTimeMillis() < end)) {
+                Thread.sleep(100);
+            }
+            assertFalse(index.contains("org/other/a.properties"));
+        } finally {
+            index.close();
+        }
+    }
+
+    public void testSharedWatch() throws Exception {
+        DirectoryIndex first = new DirectoryIndex(dir);
+        try {
+            if (!first.isWatched()) {
+                // no watch service on this platform.
+                return;
+            }
+            DirectoryIndex second = new DirectoryIndex(dir);
+            second.close();
+            create("org/example/a.properties");
+            long end = System.currentTimeMillis() + TIMEOUT;
+            while ((first.size() == 0) && (System.currentTimeMillis() < end)) {
+                Thread.sleep(100);
+            }
+            assertTrue(first.isWatched());
+            assertEquals(1, first.size());
+        } finally {
+            first.close();
+        }
+    }
+
+    private void create(String name) throws IOException {
+        new FileOutputStream(new File(dir, name)).close();
+    }
+}